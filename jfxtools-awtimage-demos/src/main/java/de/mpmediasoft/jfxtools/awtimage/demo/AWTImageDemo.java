@@ -2,32 +2,28 @@ package de.mpmediasoft.jfxtools.awtimage.demo;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.geom.Path2D;
-import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
-
-import javax.imageio.ImageIO;
 
 import de.mpmediasoft.jfxtools.awtimage.AWTImage;
 import javafx.application.Application;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.ToolBar;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 
 /** 
  * A simple demo to show how the AWTImage class is supposed to be used.
+ * Start it with the argument "--off-heap" to store the pixels in off-heap memory.
  * 
  * @author Michael Paus
  */
 public class AWTImageDemo extends Application {
 
-	private AWTImage awtImage = new AWTImage(800, 600);
+	private AWTImage awtImage;
 	
 	@Override
 	public void init() {
@@ -38,11 +34,16 @@ public class AWTImageDemo extends Application {
 	Color c1 = Color.red;
 	Color c2 = Color.green;
 	Color c3 = Color.blue;
+	Color c4 = Color.yellow;
 	
 	Color c;
 
 	@Override
 	public void start(Stage primaryStage) throws Exception {
+		boolean offHeap = getParameters().getRaw().contains("--off-heap");
+		awtImage = new AWTImage(800, 600, offHeap);
+		System.out.println("Off-heap: " + offHeap);
+		
 		Button b1 = new Button("Full (RED)");
 		b1.setOnAction(e -> {
 			c = c1;
@@ -61,28 +62,32 @@ public class AWTImageDemo extends Application {
 			awtImage.update();
 		});
 		
+		Button b6 = new Button("Parallel (YELLOW)");
+		b6.setOnAction(e -> {
+			c = c4;
+			System.out.println("Parallel update.");
+			awtImage.updateParallel(g2d -> {
+				paint(g2d);
+				return null; // Tracked
+			});
+		});
+		
         Button b4 = new Button("Save to 'awtimage.png'");
         b4.setOnAction(e -> {
-            try {
-                ImageIO.write(awtImage.getAWTImage(), "png", new File("awtimage.png"));
-            } catch (IOException e1) {
-                e1.printStackTrace();
-            }
+            awtImage.exportAsync("png", new File("awtimage.png")).whenComplete((f, ex) -> {
+                if (ex != null) ex.printStackTrace();
+            });
         });
         
         Button b5 = new Button("Save to 'awtimage.jpg'");
         b5.setOnAction(e -> {
-            try {
-                // This is a work-around for a java bug if images with alpha are stored as JPEGs.
-                Image fxImage = awtImage.getFXImage();
-                BufferedImage awtImage = new BufferedImage((int) fxImage.getWidth(), (int) fxImage.getHeight(), BufferedImage.TYPE_INT_RGB);
-                ImageIO.write(SwingFXUtils.fromFXImage(fxImage, awtImage), "jpeg", new File("awtimage.jpg"));
-            } catch (IOException e1) {
-                e1.printStackTrace();
-            }
+            // The alpha channel is ignored for JPEGs, so no work-around via an extra RGB image is needed.
+            awtImage.exportAsync("jpeg", new File("awtimage.jpg")).whenComplete((f, ex) -> {
+                if (ex != null) ex.printStackTrace();
+            });
         });
         
-		ToolBar toolbar = new ToolBar(b1, b2, b3, b4, b5);
+		ToolBar toolbar = new ToolBar(b1, b2, b3, b6, b4, b5);
 		
 		BorderPane root = new BorderPane();
 		root.setTop(toolbar);
@@ -93,22 +98,7 @@ public class AWTImageDemo extends Application {
 		primaryStage.show();
 		
 		awtImage.setOnUpdate(g2d -> {
-			// This is pure AWT.
-			
-			g2d.setBackground(Color.decode("#F0F0FF"));
-			g2d.clearRect(0, 0, awtImage.getWidth(), awtImage.getHeight());
-			
-			Path2D p = new Path2D.Double();
-			p.moveTo(100, 100);
-			p.lineTo(700, 300);
-			p.lineTo(200, 500);
-			p.closePath();
-
-			g2d.setColor(c);
-			g2d.fill(p);
-			g2d.setColor(new Color(50, 100, 150));
-			g2d.setStroke(new BasicStroke(10));
-			g2d.draw(p);
+			paint(g2d);
 			
             if (c == c1) {
 				System.out.println("Full update.");
@@ -122,6 +112,29 @@ public class AWTImageDemo extends Application {
 			}
 		});
 	}
+	
+	@Override
+	public void stop() {
+		awtImage.dispose();
+	}
+	
+	// This is pure AWT and thread-safe, so it can also be used for parallel updates.
+	private void paint(Graphics2D g2d) {
+		g2d.setBackground(Color.decode("#F0F0FF"));
+		g2d.clearRect(0, 0, awtImage.getWidth(), awtImage.getHeight());
+		
+		Path2D p = new Path2D.Double();
+		p.moveTo(100, 100);
+		p.lineTo(700, 300);
+		p.lineTo(200, 500);
+		p.closePath();
+
+		g2d.setColor(c);
+		g2d.fill(p);
+		g2d.setColor(new Color(50, 100, 150));
+		g2d.setStroke(new BasicStroke(10));
+		g2d.draw(p);
+	}
 
 	public static void main(String[] args) {
 		launch(args);
@@ -0,0 +1,366 @@
+package de.mpmediasoft.jfxtools.awtimage.demo;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PDFLoader;
+
+/**
+ * A headless command line tool which converts all pages of PDF files into PNG or JPEG
+ * images. The pages of all files are put into one work queue which is processed by a
+ * number of worker threads. Each worker has its own document and renderer, because
+ * they must not be shared between threads, and reuses its pixel buffer and its image
+ * writer for all of its pages. The images are encoded directly into the output files.
+ * The throughput in pages per second is reported while converting and at the end.
+ * If several PDF files with the same name are written into one output directory, a
+ * number is appended to the names of the later ones so that no images are overwritten.
+ *
+ * Usage: PDFBatchConverter [options] (file.pdf | directory)...
+ *
+ * @author Michael Paus
+ */
+public class PDFBatchConverter {
+
+    private final static String USAGE = String.join(System.lineSeparator(),
+        "Usage: PDFBatchConverter [options] (file.pdf | directory)...",
+        "  -o <directory>      output directory (default: next to each PDF file)",
+        "  -dpi <dpi>          resolution of the images (default: 150)",
+        "  -format <png|jpg>   image format (default: png)",
+        "  -quality <0..1>     JPEG quality (default: 0.9)",
+        "  -threads <n>        number of worker threads (default: number of processors)",
+        "  --bounded-memory    memory-map the PDF files and cache their streams in a scratch file");
+
+    private final static long REPORT_INTERVAL_MS = 1000;
+
+    private final File outputDir;
+    private final float dpi;
+    private final String format;
+    private final float quality;
+    private final int numThreads;
+    private final PDFLoader loader;
+
+    private final BlockingQueue<PageJob> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger convertedPages = new AtomicInteger();
+    private final AtomicInteger failedPages = new AtomicInteger();
+
+    // A page to be converted. The job with a null file tells a worker to stop.
+    private static final class PageJob {
+        final static PageJob END = new PageJob(null, null, 0, 0);
+
+        final File pdfFile;
+        final File outputBase;
+        final int pageIndex;
+        final int numberOfPages;
+
+        PageJob(File pdfFile, File outputBase, int pageIndex, int numberOfPages) {
+            this.pdfFile = pdfFile;
+            this.outputBase = outputBase;
+            this.pageIndex = pageIndex;
+            this.numberOfPages = numberOfPages;
+        }
+    }
+
+    // The state of one worker thread which is reused for all of its pages.
+    private final class Worker implements Runnable {
+        final DirectColorModel colorModel = new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+        final ImageWriter writer;
+        final ImageWriteParam writeParam;
+        File pdfFile;
+        PDDocument document;
+        PDFRenderer renderer;
+        int[] pixels = new int[0];
+
+        Worker() {
+            writer = ImageIO.getImageWritersByFormatName(format).next();
+            writeParam = writer.getDefaultWriteParam();
+            if (writeParam.canWriteCompressed() && isJPEG()) {
+                writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                writeParam.setCompressionQuality(quality);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    PageJob job = queue.take();
+                    if (job == PageJob.END) break;
+                    try {
+                        convert(job);
+                        convertedPages.incrementAndGet();
+                    } catch (Exception e) {
+                        failedPages.incrementAndGet();
+                        System.err.println("Failed to convert page " + (job.pageIndex + 1) + " of " + job.pdfFile + ": " + e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                closeDocument();
+                writer.dispose();
+            }
+        }
+
+        void convert(PageJob job) throws IOException {
+            if (! job.pdfFile.equals(pdfFile)) {
+                closeDocument();
+                document = loader.load(job.pdfFile);
+                renderer = new PDFRenderer(document);
+                pdfFile = job.pdfFile;
+            }
+
+            final float scale = dpi / 72.0f;
+            PDPage page = document.getPage(job.pageIndex);
+            PDRectangle cropBox = page.getCropBox();
+            boolean rotated = (page.getRotation() % 180) != 0;
+            int width = Math.max((int) Math.ceil((rotated ? cropBox.getHeight() : cropBox.getWidth()) * scale), 1);
+            int height = Math.max((int) Math.ceil((rotated ? cropBox.getWidth() : cropBox.getHeight()) * scale), 1);
+
+            BufferedImage image = createImage(width, height);
+            Graphics2D g2d = image.createGraphics();
+            try {
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g2d.setBackground(java.awt.Color.WHITE);
+                g2d.clearRect(0, 0, width, height);
+                renderer.renderPageToGraphics(job.pageIndex, g2d, scale);
+            } finally {
+                g2d.dispose();
+            }
+            write(image, outputFile(job));
+        }
+
+        // Wraps the reused pixel buffer, which only grows, into an image of the given size.
+        BufferedImage createImage(int width, int height) {
+            final int size = Math.multiplyExact(width, height);
+            if (size > pixels.length) {
+                pixels = new int[(int) Math.min((long) size + size / 4, Integer.MAX_VALUE - 8)];
+            }
+            WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, size), width, height, width, colorModel.getMasks(), null);
+            return new BufferedImage(colorModel, raster, false, null);
+        }
+
+        // Encodes the image directly into the file without an intermediate copy in memory or in a cache file.
+        void write(BufferedImage image, File file) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 ImageOutputStream ios = new FileImageOutputStream(raf)) {
+                raf.setLength(0);
+                writer.setOutput(ios);
+                writer.write(null, new IIOImage(image, null, null), writeParam);
+            } finally {
+                writer.reset();
+            }
+        }
+
+        void closeDocument() {
+            if (document != null) {
+                try {
+                    document.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                document = null;
+                renderer = null;
+                pdfFile = null;
+            }
+        }
+    }
+
+    /**
+     * Create a new converter.
+     *
+     * @param outputDir the output directory or null for the directory of each PDF file.
+     * @param dpi the resolution of the images.
+     * @param format the image format, e.g., "png" or "jpg".
+     * @param quality the JPEG quality between 0 and 1.
+     * @param numThreads the number of worker threads.
+     * @param loader the settings used to open the PDF files. Its main memory limit is shared by all open documents.
+     * @throws IllegalArgumentException if there is no image writer for the format.
+     */
+    public PDFBatchConverter(File outputDir, float dpi, String format, float quality, int numThreads, PDFLoader loader) {
+        if (! ImageIO.getImageWritersByFormatName(format).hasNext()) {
+            throw new IllegalArgumentException("Unsupported image format: " + format);
+        }
+        this.outputDir = outputDir;
+        this.dpi = dpi;
+        this.format = format;
+        this.quality = quality;
+        this.numThreads = Math.max(numThreads, 1);
+        // Each worker has a document open and one more is opened to count the pages.
+        this.loader = loader.split(this.numThreads + 1);
+    }
+
+    /**
+     * Convert all pages of the given PDF files.
+     *
+     * @param pdfFiles the PDF files.
+     * @return the number of pages which could not be converted plus the number of files which could not be opened.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    public int convert(List<File> pdfFiles) throws InterruptedException {
+        final long startTime = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(new Worker(), "PDFBatchConverter-" + (i + 1));
+            t.start();
+            workers.add(t);
+        }
+
+        // The workers already start with the pages of the first files while the others are being counted.
+        int totalPages = 0;
+        int failedFiles = 0;
+        Set<File> outputBases = new HashSet<>();
+        for (File pdfFile : pdfFiles) {
+            try (PDDocument document = loader.load(pdfFile)) {
+                int numberOfPages = document.getNumberOfPages();
+                File outputBase = outputBase(pdfFile, outputBases);
+                for (int i = 0; i < numberOfPages; i++) {
+                    queue.put(new PageJob(pdfFile, outputBase, i, numberOfPages));
+                }
+                totalPages += numberOfPages;
+            } catch (IOException e) {
+                ++failedFiles;
+                System.err.println("Failed to open " + pdfFile + ": " + e);
+            }
+        }
+        for (int i = 0; i < numThreads; i++) {
+            queue.put(PageJob.END);
+        }
+
+        for (Thread t : workers) {
+            while (t.isAlive()) {
+                t.join(REPORT_INTERVAL_MS);
+                report(startTime, totalPages, false);
+            }
+        }
+        report(startTime, totalPages, true);
+        if (failedFiles > 0) {
+            System.err.println(failedFiles + " of " + pdfFiles.size() + " PDF files could not be opened");
+        }
+        return failedPages.get() + failedFiles;
+    }
+
+    private void report(long startTime, int totalPages, boolean done) {
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+        final int pages = convertedPages.get();
+        System.out.println(String.format("%s%d/%d pages in %.1f s, %.1f pages/s%s",
+            done ? "Converted " : "", pages, totalPages, seconds, pages / Math.max(seconds, 1e-9),
+            (failedPages.get() > 0) ? ", " + failedPages.get() + " failed" : ""));
+    }
+
+    // The output directory and base file name of the images of a PDF file. A number is
+    // appended if another PDF file with the same name was already assigned to that directory.
+    private File outputBase(File pdfFile, Set<File> outputBases) {
+        File dir = (outputDir != null) ? outputDir : pdfFile.getAbsoluteFile().getParentFile();
+        String pdfFileName = pdfFile.getName();
+        int dot = pdfFileName.lastIndexOf('.');
+        String baseFileName = (dot > 0) ? pdfFileName.substring(0, dot) : pdfFileName;
+        File outputBase = new File(dir, baseFileName).getAbsoluteFile();
+        for (int n = 2; ! outputBases.add(key(outputBase)); n++) {
+            outputBase = new File(dir, baseFileName + "-" + n).getAbsoluteFile();
+        }
+        if (! outputBase.getName().equals(baseFileName)) {
+            System.err.println("Images of " + pdfFile + " are written as " + outputBase.getName() + "-*");
+        }
+        return outputBase;
+    }
+
+    // Names which only differ in case are the same file on some file systems.
+    private static File key(File file) {
+        return new File(file.getPath().toLowerCase(Locale.ROOT));
+    }
+
+    private boolean isJPEG() {
+        return "jpg".equalsIgnoreCase(format) || "jpeg".equalsIgnoreCase(format);
+    }
+
+    private File outputFile(PageJob job) {
+        int digits = String.valueOf(job.numberOfPages).length();
+        return new File(job.outputBase.getParentFile(), String.format("%s-%0" + digits + "d.%s",
+            job.outputBase.getName(), job.pageIndex + 1, format.toLowerCase(Locale.ROOT)));
+    }
+
+    private static void collectPDFFiles(File file, List<File> pdfFiles) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) collectPDFFiles(child, pdfFiles);
+            }
+        } else if (file.isFile() && file.getName().toLowerCase(Locale.ROOT).endsWith(".pdf")) {
+            pdfFiles.add(file);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Locale.setDefault(Locale.US);
+
+        File outputDir = null;
+        float dpi = 150.0f;
+        String format = "png";
+        float quality = 0.9f;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        PDFLoader loader = PDFLoader.DEFAULT;
+        List<File> pdfFiles = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-o" -> outputDir = new File(args[++i]);
+                    case "-dpi" -> dpi = Float.parseFloat(args[++i]);
+                    case "-format" -> format = args[++i];
+                    case "-quality" -> quality = Float.parseFloat(args[++i]);
+                    case "-threads" -> numThreads = Integer.parseInt(args[++i]);
+                    case "--bounded-memory" -> loader = PDFLoader.boundedMemory();
+                    default -> collectPDFFiles(new File(args[i]), pdfFiles);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            pdfFiles.clear();
+        }
+        if (pdfFiles.isEmpty()) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        if (outputDir != null && ! outputDir.isDirectory() && ! outputDir.mkdirs()) {
+            System.err.println("Cannot create output directory: " + outputDir);
+            System.exit(1);
+        }
+
+        System.out.println(String.format("Converting %d PDF files at %.0f dpi to %s with %d threads", pdfFiles.size(), dpi, format, numThreads));
+        PDFBatchConverter converter = new PDFBatchConverter(outputDir, dpi, format, quality, numThreads, loader);
+        if (converter.convert(pdfFiles) > 0) {
+            System.exit(2);
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package de.mpmediasoft.jfxtools.awtimage.demo;
+
+import java.io.File;
+import java.util.Locale;
+
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PDFContinuousView;
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PDFLoader;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ColorPicker;
+import javafx.scene.control.Label;
+import javafx.scene.control.ToolBar;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+/**
+ * A demo of a PDF viewer which shows all pages in one continuous, vertically scrolling
+ * column. Only the pages near the viewport are rendered and their images are recycled
+ * while scrolling. The "Bounded memory" option opens the document memory-mapped with a
+ * scratch file for its streams.
+ *
+ * @author Michael Paus
+ */
+public class PDFContinuousScrollDemo extends Application {
+
+    private final static int WIDTH = 1000;
+    private final static int HEIGHT = 800;
+
+    private final static double ZOOM_STEP = 1.25;
+
+    private PDFContinuousView continuousView;
+    private Label statusLabel;
+    private FileChooser fileChooser;
+    private File pdfFile;
+    private PDFLoader pdfLoader = PDFLoader.DEFAULT;
+
+    @Override
+    public void init() {
+        System.out.println("java.runtime.version: " + System.getProperty("java.runtime.version", "(undefined)"));
+        System.out.println("javafx.runtime.version: " + System.getProperty("javafx.runtime.version", "(undefined)"));
+    }
+
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        continuousView = new PDFContinuousView();
+        continuousView.currentPageProperty().addListener((observable, oldValue, newValue) -> updateStatus());
+
+        fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF files (*.pdf)", "*.pdf"));
+        Button selectPDFButton = new Button("Select PDF");
+        selectPDFButton.setTooltip(new Tooltip("Select a PDF file."));
+        selectPDFButton.setOnAction(e -> {
+            File file = fileChooser.showOpenDialog(primaryStage);
+            if (file != null) {
+                open(file);
+            }
+        });
+
+        Button firstPageButton = new Button("|<");
+        firstPageButton.setTooltip(new Tooltip("Scroll to the first page."));
+        firstPageButton.setOnAction(e -> continuousView.scrollToPage(0));
+
+        Button lastPageButton = new Button(">|");
+        lastPageButton.setTooltip(new Tooltip("Scroll to the last page."));
+        lastPageButton.setOnAction(e -> continuousView.scrollToPage(Math.max(continuousView.getNumberOfPages() - 1, 0)));
+
+        Button zoomOutButton = new Button("-");
+        zoomOutButton.setTooltip(new Tooltip("Zoom out."));
+        zoomOutButton.setOnAction(e -> {
+            continuousView.setZoom(continuousView.getZoom() / ZOOM_STEP);
+            updateStatus();
+        });
+
+        Button zoomInButton = new Button("+");
+        zoomInButton.setTooltip(new Tooltip("Zoom in."));
+        zoomInButton.setOnAction(e -> {
+            continuousView.setZoom(continuousView.getZoom() * ZOOM_STEP);
+            updateStatus();
+        });
+
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setTooltip(new Tooltip("Select background color."));
+        colorPicker.setValue(Color.WHITE);
+        colorPicker.setOnAction(a -> continuousView.setBackgroundColor(colorPicker.getValue()));
+
+        CheckBox boundedMemoryCheckBox = new CheckBox("Bounded memory");
+        boundedMemoryCheckBox.setTooltip(new Tooltip("Memory-map the PDF file and cache its streams in a scratch file."));
+        boundedMemoryCheckBox.setOnAction(a -> {
+            pdfLoader = boundedMemoryCheckBox.isSelected() ? PDFLoader.boundedMemory() : PDFLoader.DEFAULT;
+            if (pdfFile != null) open(pdfFile);
+        });
+
+        statusLabel = new Label();
+
+        ToolBar toolbar = new ToolBar(selectPDFButton, firstPageButton, lastPageButton, zoomOutButton, zoomInButton, colorPicker, boundedMemoryCheckBox, statusLabel);
+
+        BorderPane root = new BorderPane();
+        root.setTop(toolbar);
+        root.setCenter(continuousView);
+        Scene scene = new Scene(root, WIDTH, HEIGHT);
+        primaryStage.setScene(scene);
+        primaryStage.show();
+
+        Platform.runLater(() -> {
+            // Load initial PDF if provided.
+            Parameters params = getParameters();
+            if (params.getRaw().size() > 0) {
+                String pdfFileName = params.getRaw().get(0);
+                open(new File(pdfFileName));
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        continuousView.dispose();
+    }
+
+    private void open(File file) {
+        if (file != null && file.canRead()) {
+            pdfFile = file;
+            continuousView.open(file, pdfLoader).whenComplete((n, ex) -> {
+                if (ex != null) ex.printStackTrace();
+                updateStatus();
+            });
+        } else {
+            System.err.println("No valid PDF document selected.");
+            System.err.println("pdfFile: " + file);
+            Platform.exit();
+        }
+    }
+
+    private void updateStatus() {
+        statusLabel.setText(String.format("Page %d/%d, zoom %.2f, %d page images with %d MB",
+            continuousView.getCurrentPage() + 1, continuousView.getNumberOfPages(), continuousView.getZoom(),
+            continuousView.getSlotCount(), continuousView.getUsedBytes() / (1024 * 1024)));
+    }
+
+    public static void main(String[] args) {
+        Locale.setDefault(Locale.US);
+        launch(args);
+    }
+
+}
+
+class PDFContinuousScrollDemoLauncher {public static void main(String[] args) {PDFContinuousScrollDemo.main(args);}}
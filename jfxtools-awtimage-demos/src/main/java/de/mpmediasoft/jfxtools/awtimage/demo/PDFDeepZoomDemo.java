@@ -0,0 +1,163 @@
+package de.mpmediasoft.jfxtools.awtimage.demo;
+
+import java.io.File;
+import java.util.Locale;
+
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PDFDeepZoomView;
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PDFLoader;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ColorPicker;
+import javafx.scene.control.Label;
+import javafx.scene.control.ToolBar;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+/**
+ * A demo of a deep-zoom PDF viewer which only renders the visible tiles of a page.
+ * Drag the page with the mouse and zoom with the mouse wheel. The "Bounded memory"
+ * option opens the document memory-mapped with a scratch file for its streams.
+ *
+ * @author Michael Paus
+ */
+public class PDFDeepZoomDemo extends Application {
+
+    private final static int WIDTH = 1000;
+    private final static int HEIGHT = 800;
+
+    private final static long CACHE_BYTES = 128L * 1024 * 1024;
+
+    private PDFDeepZoomView deepZoomView;
+    private Label statusLabel;
+    private FileChooser fileChooser;
+    private File pdfFile;
+    private PDFLoader pdfLoader = PDFLoader.DEFAULT;
+
+    @Override
+    public void init() {
+        System.out.println("java.runtime.version: " + System.getProperty("java.runtime.version", "(undefined)"));
+        System.out.println("javafx.runtime.version: " + System.getProperty("javafx.runtime.version", "(undefined)"));
+    }
+
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        deepZoomView = new PDFDeepZoomView(CACHE_BYTES);
+
+        fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF files (*.pdf)", "*.pdf"));
+        Button selectPDFButton = new Button("Select PDF");
+        selectPDFButton.setTooltip(new Tooltip("Select a PDF file."));
+        selectPDFButton.setOnAction(e -> {
+            File file = fileChooser.showOpenDialog(primaryStage);
+            if (file != null) {
+                open(file);
+            }
+        });
+
+        Button pageBackwardButton = new Button("<");
+        pageBackwardButton.setTooltip(new Tooltip("Page backward."));
+        pageBackwardButton.setOnAction(e -> {
+            deepZoomView.setPage(Math.max(deepZoomView.getPage() - 1, 0));
+            updateStatus();
+        });
+
+        Button pageForwardButton = new Button(">");
+        pageForwardButton.setTooltip(new Tooltip("Page forward."));
+        pageForwardButton.setOnAction(e -> {
+            deepZoomView.setPage(Math.max(Math.min(deepZoomView.getPage() + 1, deepZoomView.getNumberOfPages() - 1), 0));
+            updateStatus();
+        });
+
+        Button zoomOutButton = new Button("-");
+        zoomOutButton.setTooltip(new Tooltip("Zoom out."));
+        zoomOutButton.setOnAction(e -> {
+            deepZoomView.zoomOut();
+            updateStatus();
+        });
+
+        Button zoomInButton = new Button("+");
+        zoomInButton.setTooltip(new Tooltip("Zoom in."));
+        zoomInButton.setOnAction(e -> {
+            deepZoomView.zoomIn();
+            updateStatus();
+        });
+
+        Button fitButton = new Button("Fit");
+        fitButton.setTooltip(new Tooltip("Fit page into view."));
+        fitButton.setOnAction(e -> {
+            deepZoomView.fit();
+            updateStatus();
+        });
+
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setTooltip(new Tooltip("Select background color."));
+        colorPicker.setValue(Color.WHITE);
+        colorPicker.setOnAction(a -> deepZoomView.setBackgroundColor(colorPicker.getValue()));
+
+        CheckBox boundedMemoryCheckBox = new CheckBox("Bounded memory");
+        boundedMemoryCheckBox.setTooltip(new Tooltip("Memory-map the PDF file and cache its streams in a scratch file."));
+        boundedMemoryCheckBox.setOnAction(a -> {
+            pdfLoader = boundedMemoryCheckBox.isSelected() ? PDFLoader.boundedMemory() : PDFLoader.DEFAULT;
+            if (pdfFile != null) open(pdfFile);
+        });
+
+        statusLabel = new Label();
+
+        ToolBar toolbar = new ToolBar(selectPDFButton, pageBackwardButton, pageForwardButton, zoomOutButton, zoomInButton, fitButton, colorPicker, boundedMemoryCheckBox, statusLabel);
+
+        BorderPane root = new BorderPane();
+        root.setTop(toolbar);
+        root.setCenter(deepZoomView);
+        Scene scene = new Scene(root, WIDTH, HEIGHT);
+        primaryStage.setScene(scene);
+        primaryStage.show();
+
+        Platform.runLater(() -> {
+            // Load initial PDF if provided.
+            Parameters params = getParameters();
+            if (params.getRaw().size() > 0) {
+                String pdfFileName = params.getRaw().get(0);
+                open(new File(pdfFileName));
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        deepZoomView.dispose();
+    }
+
+    private void open(File file) {
+        if (file != null && file.canRead()) {
+            pdfFile = file;
+            deepZoomView.open(file, pdfLoader).whenComplete((n, ex) -> {
+                if (ex != null) ex.printStackTrace();
+                updateStatus();
+            });
+        } else {
+            System.err.println("No valid PDF document selected.");
+            System.err.println("pdfFile: " + file);
+            Platform.exit();
+        }
+    }
+
+    private void updateStatus() {
+        statusLabel.setText(String.format("Page %d/%d, scale %.2f, cache %d MB",
+            deepZoomView.getPage() + 1, deepZoomView.getNumberOfPages(), deepZoomView.getScale(),
+            deepZoomView.getCache().getUsedBytes() / (1024 * 1024)));
+    }
+
+    public static void main(String[] args) {
+        Locale.setDefault(Locale.US);
+        launch(args);
+    }
+
+}
+
+class PDFDeepZoomDemoLauncher {public static void main(String[] args) {PDFDeepZoomDemo.main(args);}}
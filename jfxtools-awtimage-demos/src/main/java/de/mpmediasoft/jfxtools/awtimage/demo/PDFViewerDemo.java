@@ -4,8 +4,9 @@ import java.awt.Graphics2D;
 import java.io.File;
 import java.io.IOException;
 import java.util.Locale;
-
-import javax.imageio.ImageIO;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -13,7 +14,7 @@ import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.rendering.PDFRenderer;
 
-import de.mpmediasoft.jfxtools.awtimage.AWTImage;
+import de.mpmediasoft.jfxtools.awtimage.DoubleBufferedAWTImage;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.scene.Scene;
@@ -31,6 +32,10 @@ import javafx.stage.Stage;
  * A simple demo to show how the AWTImage class can be used to build
  * a simple PDF viewer based on Apache PDFBox.
  * 
+ * A PDDocument is not thread safe, so all accesses to it, including opening,
+ * rendering and closing, are done on a single document thread which is also
+ * used by the DoubleBufferedAWTImage for rendering.
+ * 
  * @author Michael Paus
  */
 public class PDFViewerDemo extends Application {
@@ -39,9 +44,18 @@ public class PDFViewerDemo extends Application {
     private final static int IMAGE_HEIGHT = 720;
        
     private ImageView imageView;
-	private AWTImage awtImage;	
+	private DoubleBufferedAWTImage awtImage;	
+    private final ExecutorService documentExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread t = new Thread(runnable);
+        t.setDaemon(true);
+        t.setName("PDFDocumentWorker");
+        return t;
+    });
+    // Only accessed on the document thread.
     private PDDocument document;    
     private PDFRenderer pdfRenderer;
+    // Only accessed on the JavaFX application thread.
+    private int numberOfPages = 0;
     private int pageIndex;
     private FileChooser fileChooser;
     private File pdfFile = null;
@@ -70,14 +84,14 @@ public class PDFViewerDemo extends Application {
         pageBackwardButton.setTooltip(new Tooltip("Page backward."));
         pageBackwardButton.setOnAction(e -> {
             pageIndex = Math.max(pageIndex - 1, 0);
-            awtImage.update();
+            update();
         });
         
         Button pageForwardButton = new Button(">");
         pageForwardButton.setTooltip(new Tooltip("Page forward."));
         pageForwardButton.setOnAction(e -> {
-            pageIndex = Math.min(pageIndex + 1, document.getNumberOfPages() - 1);
-            awtImage.update();
+            pageIndex = Math.max(Math.min(pageIndex + 1, numberOfPages - 1), 0);
+            update();
         });
         
         Button saveAsPNGButton = new Button("Save");
@@ -119,79 +133,115 @@ public class PDFViewerDemo extends Application {
         });
 	}
 	
+	@Override
+	public void stop() {
+	    if (awtImage != null) awtImage.dispose();
+	    documentExecutor.execute(this::closeDocument);
+	    documentExecutor.shutdown();
+	}
+	
 	private void open(File pdfFile) {
-        try {
-            if (pdfFile != null && pdfFile.canRead()) {
-                if (document != null) document.close();
-                document = Loader.loadPDF(pdfFile); // Version 3.0.x
-//              document = PDDocument.load(pdfFile); // Version 2.0.x
+        if (pdfFile != null && pdfFile.canRead()) {
+            CompletableFuture.supplyAsync(() -> {
+                closeDocument();
+                try {
+                    document = Loader.loadPDF(pdfFile); // Version 3.0.x
+//                  document = PDDocument.load(pdfFile); // Version 2.0.x
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
                 pdfRenderer = new PDFRenderer(document);
                 pdfRenderer.setSubsamplingAllowed(true);
-                
-                render();
-            } else {
-                System.err.println("No valid PDF document selected.");
-                System.err.println("pdfFile: " + pdfFile);
-                Platform.exit();
-            }
+                return document.getNumberOfPages();
+            }, documentExecutor).whenCompleteAsync((pages, ex) -> {
+                if (ex != null) {
+                    ex.printStackTrace();
+                } else {
+                    numberOfPages = pages;
+                    render();
+                }
+            }, Platform::runLater);
+        } else {
+            System.err.println("No valid PDF document selected.");
+            System.err.println("pdfFile: " + pdfFile);
+            Platform.exit();
+        }
+	}
+	
+    // Must be called on the document thread.
+    private void closeDocument() {
+        try {
+            if (document != null) document.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
-	}
+        document = null;
+        pdfRenderer = null;
+    }
 	
     private void render() {
         try {
-            if (pdfRenderer != null) {
+            if (numberOfPages > 0) {
                 pageIndex = 0;
                 
                 if (awtImage == null) {
                     double renderScale = imageView.getScene().getWindow().getRenderScaleX();        
-                    awtImage = new AWTImage((int)(IMAGE_WIDTH * renderScale), (int)(IMAGE_HEIGHT * renderScale));       
-                    awtImage.setOnUpdate(g2d -> {
-                        try {
-                            PDPage page = document.getPage(pageIndex);
-                            
-                            PDRectangle cropBox = page.getCropBox();
-                            
-                            float widthPt = cropBox.getWidth();
-                            float widthPix = awtImage.getWidth();
-                            float scaleX = widthPix / widthPt;
-                            
-                            float heightPt = cropBox.getHeight();
-                            float heightPix = awtImage.getHeight();
-                            float scaleY = heightPix / heightPt;
-                            
-                            float scale = Math.min(scaleX, scaleY);
-                            
-                            Graphics2D g2 = (Graphics2D) awtImage.getAWTImage().getGraphics();
-                            // Set background for transparent pages
-                            java.awt.Color awtBackgroundColor = new java.awt.Color(
-                                (float)backgroundColor.getRed(),
-                                (float)backgroundColor.getGreen(),
-                                (float)backgroundColor.getBlue(),
-                                (float)backgroundColor.getOpacity());
-                            g2.setBackground(awtBackgroundColor);
-                            g2.clearRect(0, 0, awtImage.getWidth(), awtImage.getHeight());
-                            
-                            // Render the selected page
-                            pdfRenderer.renderPageToGraphics(pageIndex, g2, scale);
-                            g2.dispose();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-    
-                        return null;
-                    });
-                    imageView.setImage(awtImage.getFXImage());
+                    awtImage = new DoubleBufferedAWTImage((int)(IMAGE_WIDTH * renderScale), (int)(IMAGE_HEIGHT * renderScale), documentExecutor);       
+                    imageView.imageProperty().bind(awtImage.fxImageProperty());
                 }
                 
-                awtImage.update();
+                update();
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
     
+    private void update() {
+        // The rendering is done on the document thread, so we capture the current state here.
+        final int index = pageIndex;
+        final Color background = backgroundColor;
+        final int width = awtImage.getWidth();
+        final int height = awtImage.getHeight();
+        
+        awtImage.update(g2d -> {
+            // A new document may have been opened in the meantime.
+            if (document == null || index >= document.getNumberOfPages()) return null;
+            try {
+                PDPage page = document.getPage(index);
+                PDRectangle cropBox = page.getCropBox();
+                
+                float widthPt = cropBox.getWidth();
+                float widthPix = width;
+                float scaleX = widthPix / widthPt;
+                
+                float heightPt = cropBox.getHeight();
+                float heightPix = height;
+                float scaleY = heightPix / heightPt;
+                
+                float scale = Math.min(scaleX, scaleY);
+                
+                Graphics2D g2 = (Graphics2D) g2d.create();
+                // Set background for transparent pages
+                java.awt.Color awtBackgroundColor = new java.awt.Color(
+                    (float)background.getRed(),
+                    (float)background.getGreen(),
+                    (float)background.getBlue(),
+                    (float)background.getOpacity());
+                g2.setBackground(awtBackgroundColor);
+                g2.clearRect(0, 0, width, height);
+                
+                // Render the selected page
+                pdfRenderer.renderPageToGraphics(index, g2, scale);
+                g2.dispose();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            return null;
+        });
+    }
+    
 	private void saveAsPNG(File pdfFile) {
     	try {
     	    if (pdfFile != null && pdfFile.canRead()) {
@@ -199,8 +249,13 @@ public class PDFViewerDemo extends Application {
                 String pdfFileName = pdfFile.getName();
                 String baseFileName = pdfFileName.substring(0, pdfFileName.lastIndexOf('.'));
                 File pngFile = new File(parent, baseFileName + ".png");
-    	        ImageIO.write(awtImage.getAWTImage(), "png", pngFile);
-    	        System.out.println("PNG file written to: " + pngFile);
+    	        awtImage.exportAsync("png", pngFile).whenComplete((f, ex) -> {
+    	            if (ex != null) {
+    	                ex.printStackTrace();
+    	            } else {
+    	                System.out.println("PNG file written to: " + f);
+    	            }
+    	        });
     	    } else {
                 System.err.println("No valid PDF document selected.");
     	    }
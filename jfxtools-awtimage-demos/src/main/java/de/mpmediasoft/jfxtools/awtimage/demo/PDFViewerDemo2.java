@@ -8,8 +8,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Locale;
 
-import javax.imageio.ImageIO;
-
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -78,14 +76,14 @@ public class PDFViewerDemo2 extends Application {
         pageBackwardButton.setTooltip(new Tooltip("Page backward."));
         pageBackwardButton.setOnAction(e -> {
             pageIndex = Math.max(pageIndex - 1, 0);
-            awtImage.update();
+            render(pageScale, pageIndex, rotAngleDeg, backgroundColor);
         });
         
         Button pageForwardButton = new Button(">");
         pageForwardButton.setTooltip(new Tooltip("Page forward."));
         pageForwardButton.setOnAction(e -> {
             pageIndex = Math.min(pageIndex + 1, document.getNumberOfPages() - 1);
-            awtImage.update();
+            render(pageScale, pageIndex, rotAngleDeg, backgroundColor);
         });
         
         Button saveAsPNGButton = new Button("Save");
@@ -110,7 +108,6 @@ public class PDFViewerDemo2 extends Application {
             } catch (NumberFormatException e1) {
                 rotAngleDeg = 0.0;
             }
-            awtImage = null;
             render(pageScale, pageIndex, rotAngleDeg, backgroundColor);
         });
         
@@ -159,65 +156,73 @@ public class PDFViewerDemo2 extends Application {
     private void render(double pageScale, int pageIndex, double rotAngleDeg, Color background) {
         try {
             if (pdfRenderer != null) {
-                if (awtImage == null) {
-                    PDPage page = document.getPage(pageIndex);
-                    
-                    PDRectangle bBox = page.getBBox();
-                    
-                    Rectangle2D pageRect = new Rectangle2D.Double(0.0, 0.0, bBox.getWidth() * pageScale, bBox.getHeight() * pageScale);
+                PDPage page = document.getPage(pageIndex);
+                
+                PDRectangle bBox = page.getBBox();
+                
+                Rectangle2D pageRect = new Rectangle2D.Double(0.0, 0.0, bBox.getWidth() * pageScale, bBox.getHeight() * pageScale);
+                
+                final AffineTransform combTrafo;
+                final int imageWidth, imageHeight;
+                
+                if (rotAngleDeg != 0.0) {
+                    AffineTransform rot = AffineTransform.getRotateInstance(Math.toRadians(rotAngleDeg));                        
+                    Shape rotRect = rot.createTransformedShape(pageRect);                        
+                    Rectangle2D rotRectBnds = rotRect.getBounds2D();
+                     
+                    AffineTransform trans = AffineTransform.getTranslateInstance(-rotRectBnds.getMinX(), -rotRectBnds.getMinY());
+                                             
+                    combTrafo = new AffineTransform();
+                    combTrafo.concatenate(trans);
+                    combTrafo.concatenate(rot);
                     
-                    final AffineTransform combTrafo;
+                    Shape combTrafoPageRect = combTrafo.createTransformedShape(pageRect);
+                    System.out.println("combTrafoPageRect: " + combTrafoPageRect);
                     
-                    if (rotAngleDeg != 0.0) {
-                        AffineTransform rot = AffineTransform.getRotateInstance(Math.toRadians(rotAngleDeg));                        
-                        Shape rotRect = rot.createTransformedShape(pageRect);                        
-                        Rectangle2D rotRectBnds = rotRect.getBounds2D();
-                         
-                        AffineTransform trans = AffineTransform.getTranslateInstance(-rotRectBnds.getMinX(), -rotRectBnds.getMinY());
-                                                 
-                        combTrafo = new AffineTransform();
-                        combTrafo.concatenate(trans);
-                        combTrafo.concatenate(rot);
+                    imageWidth = (int)rotRectBnds.getWidth();
+                    imageHeight = (int)rotRectBnds.getHeight();
+                } else {
+                    combTrafo = null;
+                    imageWidth = (int)pageRect.getWidth();
+                    imageHeight = (int)pageRect.getHeight();
+                }
+                
+                // Reuse the memory of the image whenever possible.
+                if (awtImage == null) {
+                    awtImage = new AWTImage(imageWidth, imageHeight);
+                } else {
+                    awtImage.resize(imageWidth, imageHeight);
+                }
+                
+                awtImage.setOnUpdate(g2d -> {
+                    try {                            
+                        Graphics2D g2 = (Graphics2D) awtImage.getAWTImage().getGraphics();
+                        g2.setBackground(CLEAR_COLOR);
+                        g2.clearRect(0, 0, awtImage.getWidth(), awtImage.getHeight());
+
+                        java.awt.Color awtBackgroundColor = new java.awt.Color(
+                            (float)background.getRed(),
+                            (float)background.getGreen(),
+                            (float)background.getBlue(),
+                            (float)background.getOpacity());
+                        
+                        g2.setBackground(awtBackgroundColor);
                         
-                        Shape combTrafoPageRect = combTrafo.createTransformedShape(pageRect);
-                        System.out.println("combTrafoPageRect: " + combTrafoPageRect);
+                        if (combTrafo != null) {
+                            g2.setTransform(combTrafo);
+                        }
                         
-                        awtImage = new AWTImage((int)rotRectBnds.getWidth(), (int)rotRectBnds.getHeight());
-                    } else {
-                        combTrafo = null;
-                        awtImage = new AWTImage((int)pageRect.getWidth(), (int)pageRect.getHeight());
+                        // Render the selected page
+                        pdfRenderer.renderPageToGraphics(pageIndex, g2, (float)pageScale);
+                        
+                        g2.dispose();
+                    } catch (IOException e) {
+                        e.printStackTrace();
                     }
-                    
-                    awtImage.setOnUpdate(g2d -> {
-                        try {                            
-                            Graphics2D g2 = (Graphics2D) awtImage.getAWTImage().getGraphics();
-                            g2.setBackground(CLEAR_COLOR);
-                            g2.clearRect(0, 0, awtImage.getWidth(), awtImage.getHeight());
 
-                            java.awt.Color awtBackgroundColor = new java.awt.Color(
-                                (float)background.getRed(),
-                                (float)background.getGreen(),
-                                (float)background.getBlue(),
-                                (float)background.getOpacity());
-                            
-                            g2.setBackground(awtBackgroundColor);
-                            
-                            if (combTrafo != null) {
-                                g2.setTransform(combTrafo);
-                            }
-                            
-                            // Render the selected page
-                            pdfRenderer.renderPageToGraphics(pageIndex, g2, (float)pageScale);
-                            
-                            g2.dispose();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-    
-                        return null;
-                    });
-                    imageView.setImage(awtImage.getFXImage());
-                }
+                    return null;
+                });
+                imageView.setImage(awtImage.getFXImage());
                 
                 awtImage.update();
             }
@@ -233,8 +238,13 @@ public class PDFViewerDemo2 extends Application {
                 String pdfFileName = pdfFile.getName();
                 String baseFileName = pdfFileName.substring(0, pdfFileName.lastIndexOf('.'));
                 File pngFile = new File(parent, baseFileName + ".png");
-    	        ImageIO.write(awtImage.getAWTImage(), "png", pngFile);
-    	        System.out.println("PNG file written to: " + pngFile);
+    	        awtImage.exportAsync("png", pngFile).whenComplete((f, ex) -> {
+    	            if (ex != null) {
+    	                ex.printStackTrace();
+    	            } else {
+    	                System.out.println("PNG file written to: " + f);
+    	            }
+    	        });
     	    } else {
                 System.err.println("No valid PDF document selected.");
     	    }
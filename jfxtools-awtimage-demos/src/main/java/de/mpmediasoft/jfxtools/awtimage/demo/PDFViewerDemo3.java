@@ -0,0 +1,407 @@
+package de.mpmediasoft.jfxtools.awtimage.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import de.mpmediasoft.jfxtools.awtimage.AWTImage;
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PDFLoader;
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PDFRendererPool;
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PDFTextIndex;
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PDFThumbnailStrip;
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PageDiskCache;
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PageKey;
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.PageRenderService;
+import de.mpmediasoft.jfxtools.awtimage.demo.pdf.SearchHighlighter;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ColorPicker;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.control.ToolBar;
+import javafx.scene.control.Tooltip;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+/**
+ * A variant of the PDFViewerDemo2 which renders the pages in the background via
+ * a PageRenderService. The rendered pages are kept in a memory bounded cache and
+ * the neighbouring pages are pre-rendered, so that paging through a document is
+ * mostly instant.
+ *
+ * Pages which are not cached yet are rendered progressively. First a low resolution
+ * preview is rendered quickly and displayed scaled up and then it is replaced by the
+ * page rendered at full resolution.
+ *
+ * On the left side there is a virtualised strip of page thumbnails which are rendered
+ * concurrently. Selecting a thumbnail shows the corresponding page.
+ *
+ * With the "Bounded memory" option the documents are memory-mapped and their decoded
+ * streams are cached in a scratch file, so that even huge scanned documents can be
+ * opened without exhausting the heap. The option can also be enabled by passing
+ * --bounded-memory as the second program argument.
+ *
+ * All rendered pages are also stored in a persistent disk cache in the user's home
+ * directory, so that reopening a frequently used document is instant.
+ *
+ * The text of the document is indexed in the background and the index is stored in
+ * the disk cache. Enter a word or phrase in the search field and press Enter to jump
+ * to the first hit and again to jump to the next one. The hits are highlighted directly
+ * in the rendered page image.
+ *
+ * @author Michael Paus
+ */
+public class PDFViewerDemo3 extends Application {
+
+    private final static int WIDTH = 1000;
+    private final static int HEIGHT = 800;
+
+    private final static long CACHE_BYTES = 256L * 1024 * 1024;
+    private final static long THUMBNAIL_CACHE_BYTES = 64L * 1024 * 1024;
+    private final static long DISK_CACHE_BYTES = 1024L * 1024 * 1024;
+    private final static File DISK_CACHE_DIR = new File(System.getProperty("user.home"), ".jfxtools/awtimage/pagecache");
+    private final static int PREFETCH_AHEAD = 2;
+    private final static int PREFETCH_BEHIND = 1;
+    private final static float PREVIEW_FACTOR = 0.25f;
+
+    private ImageView imageView;
+    private Label statusLabel;
+    private PDFThumbnailStrip thumbnailStrip;
+    private PageDiskCache diskCache;
+    private PageRenderService renderService;
+    private FileChooser fileChooser;
+    private File pdfFile = null;
+    private PDFLoader pdfLoader = PDFLoader.DEFAULT;
+    private int numberOfPages = 0;
+    private int pageIndex = 0;
+    private Color backgroundColor = Color.WHITE;
+    private double rotAngleDeg = 0.0;
+    private double pageScale = 1.0;
+    private PageKey currentKey;
+    private PageKey shownKey;
+    private AWTImage currentImage;
+    private PDFRendererPool indexPool;
+    private PDFTextIndex textIndex;
+    private final SearchHighlighter highlighter = new SearchHighlighter();
+    private List<PDFTextIndex.Hit> hits = Collections.emptyList();
+    private String hitQuery = "";
+    private int hitIndex = -1;
+
+    @Override
+    public void init() {
+        System.out.println("java.runtime.version: " + System.getProperty("java.runtime.version", "(undefined)"));
+        System.out.println("javafx.runtime.version: " + System.getProperty("javafx.runtime.version", "(undefined)"));
+    }
+
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        try {
+            diskCache = new PageDiskCache(DISK_CACHE_DIR, DISK_CACHE_BYTES);
+        } catch (IOException e) {
+            System.err.println("Disk cache disabled: " + e);
+        }
+
+        fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF files (*.pdf)", "*.pdf"));
+        Button selectPDFButton = new Button("Select PDF");
+        selectPDFButton.setTooltip(new Tooltip("Select a PDF file."));
+        selectPDFButton.setOnAction(e -> {
+            File file = fileChooser.showOpenDialog(primaryStage);
+            if (file != null) {
+                open(file);
+            }
+        });
+
+        Button pageBackwardButton = new Button("<");
+        pageBackwardButton.setTooltip(new Tooltip("Page backward."));
+        pageBackwardButton.setOnAction(e -> {
+            pageIndex = Math.max(pageIndex - 1, 0);
+            showPage();
+        });
+
+        Button pageForwardButton = new Button(">");
+        pageForwardButton.setTooltip(new Tooltip("Page forward."));
+        pageForwardButton.setOnAction(e -> {
+            pageIndex = Math.max(Math.min(pageIndex + 1, numberOfPages - 1), 0);
+            showPage();
+        });
+
+        Button saveAsPNGButton = new Button("Save");
+        saveAsPNGButton.setTooltip(new Tooltip("Save rendered page as PNG image."));
+        saveAsPNGButton.setOnAction(e -> {
+            saveAsPNG(pdfFile);
+        });
+
+        ColorPicker colorPicker = new ColorPicker();
+        colorPicker.setTooltip(new Tooltip("Select background color."));
+        colorPicker.setValue(backgroundColor);
+        colorPicker.setOnAction(a -> {
+            backgroundColor = colorPicker.getValue();
+            thumbnailStrip.setBackgroundColor(backgroundColor);
+            showPage();
+        });
+
+        TextField rotDegInput = new TextField();
+        rotDegInput.setTooltip(new Tooltip("Select rotation angle in degrees [-180, 180]."));
+        rotDegInput.setOnAction(a -> {
+            try {
+                rotAngleDeg = Math.min(Math.max(Double.parseDouble(rotDegInput.getText()), -180), +180);
+            } catch (NumberFormatException e1) {
+                rotAngleDeg = 0.0;
+            }
+            showPage();
+        });
+
+        CheckBox boundedMemoryCheckBox = new CheckBox("Bounded memory");
+        boundedMemoryCheckBox.setTooltip(new Tooltip("Memory-map the PDF file and cache its streams in a scratch file."));
+        boundedMemoryCheckBox.setOnAction(a -> {
+            pdfLoader = boundedMemoryCheckBox.isSelected() ? PDFLoader.boundedMemory() : PDFLoader.DEFAULT;
+            if (pdfFile != null) open(pdfFile);
+        });
+
+        TextField searchField = new TextField();
+        searchField.setPromptText("Search");
+        searchField.setTooltip(new Tooltip("Search a word or phrase. Press Enter again for the next hit."));
+        searchField.setOnAction(a -> search(searchField.getText()));
+
+        statusLabel = new Label();
+
+        ToolBar toolbar = new ToolBar(selectPDFButton, pageBackwardButton, pageForwardButton, saveAsPNGButton, colorPicker, rotDegInput, boundedMemoryCheckBox, searchField, statusLabel);
+
+        BorderPane root = new BorderPane();
+        root.setTop(toolbar);
+
+        imageView = new ImageView();
+        root.setCenter(imageView);
+
+        thumbnailStrip = new PDFThumbnailStrip(THUMBNAIL_CACHE_BYTES);
+        thumbnailStrip.getSelectionModel().selectedIndexProperty().addListener((v, o, n) -> {
+            int index = n.intValue();
+            if (index >= 0 && index != pageIndex) {
+                pageIndex = index;
+                showPage();
+            }
+        });
+        root.setLeft(thumbnailStrip);
+        Scene scene = new Scene(root, WIDTH, HEIGHT);
+        primaryStage.setScene(scene);
+        primaryStage.show();
+
+        Platform.runLater(() -> {
+            // Load initial PDF if provided.
+            Parameters params = getParameters();
+            if (params.getRaw().size() > 1 && "--bounded-memory".equals(params.getRaw().get(1))) {
+                boundedMemoryCheckBox.setSelected(true);
+                pdfLoader = PDFLoader.boundedMemory();
+            }
+            if (params.getRaw().size() > 0) {
+                String pdfFileName = params.getRaw().get(0);
+                open(new File(pdfFileName));
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        if (renderService != null) renderService.dispose();
+        disposeIndex();
+        thumbnailStrip.dispose();
+    }
+
+    private void open(File file) {
+        if (file != null && file.canRead()) {
+            // The render service, the thumbnail strip and the index each have a pool of documents which share the memory.
+            final PDFLoader poolLoader = pdfLoader.split(3);
+            if (renderService != null) renderService.dispose();
+            disposeIndex();
+            thumbnailStrip.dispose();
+            renderService = new PageRenderService(file, CACHE_BYTES, Runtime.getRuntime().availableProcessors(), poolLoader);
+            renderService.setDiskCache(diskCache);
+            pdfFile = file;
+            numberOfPages = 0;
+            pageIndex = 0;
+            highlighter.clear();
+            currentImage = null;
+            currentKey = null;
+            shownKey = null;
+            imageView.setImage(null);
+            statusLabel.setText("Opening " + file.getName() + " ...");
+
+            // Parsing a huge document takes a while, so the pages are counted by the render service.
+            final PageRenderService service = renderService;
+            service.countPagesAsync().whenComplete((pages, ex) -> {
+                if (service != renderService) return; // Another file has been opened meanwhile.
+                if (ex != null) {
+                    ex.printStackTrace();
+                    statusLabel.setText("Cannot open " + file.getName());
+                    return;
+                }
+                numberOfPages = pages;
+                thumbnailStrip.open(file, numberOfPages, poolLoader);
+                buildIndex(file, poolLoader);
+                showPage();
+            });
+        } else {
+            System.err.println("No valid PDF document selected.");
+            System.err.println("pdfFile: " + file);
+            Platform.exit();
+        }
+    }
+
+    private void showPage() {
+        if (renderService == null || numberOfPages == 0) return;
+
+        final PageKey key = new PageKey(pageIndex, (float) pageScale, rotAngleDeg, backgroundColor);
+        currentKey = key;
+        highlighter.clear();
+        if (thumbnailStrip.getSelectionModel().getSelectedIndex() != pageIndex) {
+            thumbnailStrip.getSelectionModel().select(pageIndex);
+            thumbnailStrip.scrollTo(pageIndex);
+        }
+        final long startTime = System.nanoTime();
+        if (! renderService.getCache().contains(key)) {
+            renderService.requestPreview(key, PREVIEW_FACTOR).whenComplete((preview, ex) -> {
+                if (ex == null && preview != null && key.equals(currentKey) && ! key.equals(shownKey)) {
+                    imageView.setImage(preview.getFXImage());
+                    imageView.setFitWidth(preview.getWidth() / PREVIEW_FACTOR);
+                    imageView.setFitHeight(preview.getHeight() / PREVIEW_FACTOR);
+                    statusLabel.setText(String.format("Page %d/%d preview in %.1f ms",
+                        key.getPageIndex() + 1, numberOfPages, (System.nanoTime() - startTime) / 1e6));
+                }
+            });
+        }
+        renderService.requestPage(key).whenComplete((image, ex) -> {
+            if (ex != null) {
+                if (! (ex instanceof CancellationException)) ex.printStackTrace();
+            } else if (key.equals(currentKey)) {
+                currentImage = image;
+                shownKey = key;
+                imageView.setImage(image.getFXImage());
+                imageView.setFitWidth(0);
+                imageView.setFitHeight(0);
+                highlightHits(image, key);
+                statusLabel.setText(String.format("Page %d/%d in %.1f ms, cache %d MB%s",
+                    key.getPageIndex() + 1, numberOfPages,
+                    (System.nanoTime() - startTime) / 1e6, renderService.getCache().getUsedBytes() / (1024 * 1024),
+                    hits.isEmpty() ? "" : String.format(", hit %d/%d", hitIndex + 1, hits.size())));
+            }
+        });
+
+        List<PageKey> prefetchKeys = new ArrayList<>();
+        for (int i = 1; i <= PREFETCH_AHEAD; i++) {
+            if (pageIndex + i < numberOfPages) prefetchKeys.add(key.withPageIndex(pageIndex + i));
+            if (i <= PREFETCH_BEHIND && pageIndex - i >= 0) prefetchKeys.add(key.withPageIndex(pageIndex - i));
+        }
+        renderService.prefetch(prefetchKeys);
+    }
+
+    private void buildIndex(File file, PDFLoader loader) {
+        disposeIndex();
+        final PDFTextIndex index = new PDFTextIndex(numberOfPages);
+        textIndex = index;
+        indexPool = new PDFRendererPool(file, Math.max(Runtime.getRuntime().availableProcessors() / 2, 1), loader);
+        hits = Collections.emptyList();
+        hitQuery = "";
+        hitIndex = -1;
+
+        final PDFRendererPool pool = indexPool;
+        final long startTime = System.nanoTime();
+        CompletableFuture<String> hashFuture = renderService.getDocumentHashAsync();
+        if (hashFuture == null) hashFuture = CompletableFuture.completedFuture(null);
+        final PageDiskCache disk = diskCache;
+        hashFuture.thenCompose(hash -> {
+            if (hash == null || disk == null) return index.buildAsync(pool, null);
+            // The index is kept in the disk cache, which limits its size.
+            final File indexFile = disk.getIndexFile(hash);
+            final boolean existed = indexFile.isFile();
+            return index.buildAsync(pool, indexFile).thenApply(i -> {
+                if (! existed && indexFile.isFile()) disk.indexFileWritten(indexFile);
+                return i;
+            });
+        })
+            .whenCompleteAsync((i, ex) -> {
+                if (ex != null) {
+                    if (! (ex.getCause() instanceof CancellationException)) ex.printStackTrace();
+                } else if (index == textIndex) {
+                    statusLabel.setText(String.format("Indexed %d pages in %.1f ms", index.getNumberOfPages(), (System.nanoTime() - startTime) / 1e6));
+                }
+            }, Platform::runLater);
+    }
+
+    private void disposeIndex() {
+        if (textIndex != null) textIndex.cancel();
+        if (indexPool != null) indexPool.dispose();
+        textIndex = null;
+        indexPool = null;
+    }
+
+    private void search(String query) {
+        if (textIndex == null) return;
+        if (query.equals(hitQuery) && ! hits.isEmpty()) {
+            hitIndex = (hitIndex + 1) % hits.size();
+        } else {
+            hitQuery = query;
+            hits = textIndex.search(query);
+            hitIndex = hits.isEmpty() ? -1 : 0;
+        }
+        if (hits.isEmpty()) {
+            highlighter.clear();
+            statusLabel.setText(String.format("No hits for \"%s\" in %d/%d indexed pages",
+                query, textIndex.getIndexedPageCount(), textIndex.getNumberOfPages()));
+        } else {
+            pageIndex = hits.get(hitIndex).getPageIndex();
+            showPage();
+        }
+    }
+
+    private void highlightHits(AWTImage image, PageKey key) {
+        if (hits.isEmpty() || textIndex == null) return;
+        List<PDFTextIndex.Hit> pageHits = new ArrayList<>();
+        for (PDFTextIndex.Hit hit : hits) {
+            if (hit.getPageIndex() == key.getPageIndex()) pageHits.add(hit);
+        }
+        PDRectangle pageSize = textIndex.getPageSize(key.getPageIndex());
+        if (! pageHits.isEmpty() && pageSize != null) {
+            highlighter.highlight(image, pageSize, key, pageHits, hits.get(hitIndex));
+        }
+    }
+
+    private void saveAsPNG(File pdfFile) {
+        if (pdfFile != null && pdfFile.canRead() && currentImage != null) {
+            File parent = pdfFile.getParentFile();
+            String pdfFileName = pdfFile.getName();
+            String baseFileName = pdfFileName.substring(0, pdfFileName.lastIndexOf('.'));
+            File pngFile = new File(parent, baseFileName + ".png");
+            currentImage.exportAsync("png", pngFile).whenComplete((f, ex) -> {
+                if (ex != null) {
+                    ex.printStackTrace();
+                } else {
+                    System.out.println("PNG file written to: " + f);
+                }
+            });
+        } else {
+            System.err.println("No valid PDF document selected.");
+        }
+    }
+
+    public static void main(String[] args) {
+        Locale.setDefault(Locale.US);
+        launch(args);
+    }
+
+}
+
+class PDFViewerDemo3Launcher {public static void main(String[] args) {PDFViewerDemo3.main(args);}}
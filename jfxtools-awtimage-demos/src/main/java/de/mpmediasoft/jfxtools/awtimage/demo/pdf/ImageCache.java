@@ -0,0 +1,125 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import de.mpmediasoft.jfxtools.awtimage.AWTImage;
+
+/**
+ * A cache of rendered pages or tiles. The least recently used images are evicted
+ * as soon as the total size of all cached images exceeds a given limit. Pinned
+ * images, e.g., the currently visible ones, are never evicted, even if they alone
+ * exceed the limit. Otherwise they would just be rendered again and again.
+ * Must only be accessed on the JavaFX application thread.
+ *
+ * @param <K> the type of the keys, e.g., PageKey.
+ *
+ * @author Michael Paus
+ */
+public class ImageCache<K> {
+
+    private final long maxBytes;
+    private final LinkedHashMap<K, AWTImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private Set<K> pinnedKeys = Collections.emptySet();
+    private long usedBytes = 0;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxBytes the maximum total size of all cached images in bytes.
+     */
+    public ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get a cached image and mark it as recently used.
+     *
+     * @param key the key.
+     * @return the cached image or null.
+     */
+    public AWTImage get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Check whether an image is cached without changing its LRU position.
+     *
+     * @param key the key.
+     * @return true if the image is cached.
+     */
+    public boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Add an image to the cache and evict the least recently used images if necessary.
+     *
+     * @param key the key.
+     * @param image the rendered image.
+     */
+    public void put(K key, AWTImage image) {
+        AWTImage old = entries.put(key, image);
+        if (old != null) {
+            usedBytes -= sizeOf(old);
+        }
+        usedBytes += sizeOf(image);
+        evict(image);
+    }
+
+    /**
+     * Pin the images with the given keys, so that they are not evicted, and unpin all
+     * others. Keys which are not cached yet are pinned as soon as they are added.
+     *
+     * @param keys the keys to be pinned, e.g., those of the visible tiles.
+     */
+    public void pin(Collection<K> keys) {
+        pinnedKeys = new HashSet<>(keys);
+        evict(null);
+    }
+
+    private void evict(AWTImage added) {
+        Iterator<Map.Entry<K, AWTImage>> it = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<K, AWTImage> eldest = it.next();
+            if (eldest.getValue() == added) continue; // Never evict what was just added.
+            if (pinnedKeys.contains(eldest.getKey())) continue;
+            usedBytes -= sizeOf(eldest.getValue());
+            it.remove();
+        }
+    }
+
+    /**
+     * Remove all images from the cache.
+     */
+    public void clear() {
+        entries.clear();
+        pinnedKeys = Collections.emptySet();
+        usedBytes = 0;
+    }
+
+    /**
+     * Get the total size of all cached images.
+     *
+     * @return the total size in bytes.
+     */
+    public long getUsedBytes() {return usedBytes;}
+
+    /**
+     * Get the maximum total size of all cached images.
+     *
+     * @return the maximum total size in bytes.
+     */
+    public long getMaxBytes() {return maxBytes;}
+
+    private static long sizeOf(AWTImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+}
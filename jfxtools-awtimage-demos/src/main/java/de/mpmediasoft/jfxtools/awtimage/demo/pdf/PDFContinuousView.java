@@ -0,0 +1,522 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import de.mpmediasoft.jfxtools.awtimage.AWTImage;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.geometry.Orientation;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * A view which shows all pages of a PDF document below each other in one continuous,
+ * vertically scrolling column. Like a virtual flow, it only keeps a small window of
+ * page slots alive, i.e., the visible pages plus a few pages above and below them.
+ * Each slot owns an AWTImage which is recycled for the next page entering the window,
+ * so that its memory is reused via AWTImage.resize() instead of being reallocated.
+ * The pages are rendered concurrently by a PDFRendererPool directly into the image of
+ * their slot. Pages which have left the window before they were started are cancelled.
+ * This bypasses AWTImage.update(), which is only safe because the JavaFX image of a
+ * slot is never shown while its page is being rendered. It is taken out of its view
+ * before the render task is submitted and only shown again, after a full upload, when
+ * the task has finished.
+ *
+ * So the memory use and the render work of this view only depend on the size of the
+ * viewport and not on the number of pages of the document. The layout of the column
+ * is computed from the page sizes, which are read once when the document is opened.
+ *
+ * A zoom of 1.0 fits the widest page into the width of the view. Smaller zoom values
+ * show more pages at once. Scroll with the mouse wheel or the scroll bar.
+ * All methods must be called on the JavaFX application thread.
+ *
+ * @author Michael Paus
+ */
+public class PDFContinuousView extends Region {
+
+    /**
+     * The default number of unused slots which are kept for pages scrolled back into view.
+     */
+    public final static int DEFAULT_MAX_IDLE_SLOTS = 4;
+
+    /**
+     * The minimum zoom relative to the width of the view.
+     */
+    public final static double MIN_ZOOM = 0.125;
+
+    private final static double PAGE_GAP = 10.0;
+    private final static int PREFETCH_PAGES = 1;
+
+    // Slot states. Queued render tasks are identified by a positive ticket.
+    private final static int IDLE = 0;
+    private final static int RUNNING = -1;
+
+    private final int maxIdleSlots;
+    private final List<PageSlot> slots = new ArrayList<>();
+    private final ScrollBar scrollBar = new ScrollBar();
+    private final Rectangle clip = new Rectangle();
+    private final ReadOnlyIntegerWrapper currentPage = new ReadOnlyIntegerWrapper(this, "currentPage", 0);
+
+    private PDFRendererPool rendererPool;
+    private PDRectangle[] pageBoxes;
+    private double[] pageTops;
+    private int[] pageWidths;
+    private float layoutScale = 0.0f;
+    private double zoom = 1.0;
+    private double scrollY = 0.0;
+    private int scrollToPagePending = -1;
+    private boolean updatingScrollBar = false;
+    private Color backgroundColor = Color.WHITE;
+    private int nextTicket = 1;
+    private long useCount = 0;
+
+    private final class PageSlot {
+        final ImageView imageView = new ImageView();
+        final Rectangle placeholder = new Rectangle();
+        final AtomicInteger state = new AtomicInteger(IDLE);
+        AWTImage image;
+        PageKey key;
+        CompletableFuture<PageKey> future;
+        boolean inUse = false;
+        boolean rendered = false;
+        boolean discarded = false;
+        long lastUse;
+
+        PageSlot() {
+            getChildren().add(0, imageView);
+            getChildren().add(0, placeholder);
+        }
+
+        boolean isBusy() {return state.get() != IDLE;}
+
+        void hide() {
+            imageView.setVisible(false);
+            placeholder.setVisible(false);
+        }
+    }
+
+    /**
+     * Create a new view with the default number of idle slots.
+     */
+    public PDFContinuousView() {
+        this(DEFAULT_MAX_IDLE_SLOTS);
+    }
+
+    /**
+     * Create a new view.
+     *
+     * @param maxIdleSlots the number of unused slots which are kept for pages scrolled back into view.
+     */
+    public PDFContinuousView(int maxIdleSlots) {
+        this.maxIdleSlots = maxIdleSlots;
+
+        scrollBar.setOrientation(Orientation.VERTICAL);
+        scrollBar.setMin(0.0);
+        scrollBar.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (! updatingScrollBar) {
+                scrollY = newValue.doubleValue();
+                requestLayout();
+            }
+        });
+        getChildren().add(scrollBar);
+
+        clip.widthProperty().bind(widthProperty());
+        clip.heightProperty().bind(heightProperty());
+        setClip(clip);
+
+        setOnScroll(e -> {
+            scrollY -= e.getDeltaY();
+            requestLayout();
+            e.consume();
+        });
+    }
+
+    /**
+     * Open a PDF file and show its first page. The renderer pool of a previously
+     * opened file is disposed.
+     *
+     * @param pdfFile the PDF file.
+     * @return a future which is completed with the number of pages on the JavaFX application thread.
+     */
+    public CompletableFuture<Integer> open(File pdfFile) {
+        return open(pdfFile, PDFLoader.DEFAULT);
+    }
+
+    /**
+     * Open a PDF file and show its first page. The renderer pool of a previously
+     * opened file is disposed.
+     *
+     * @param pdfFile the PDF file.
+     * @param loader the settings used to open the documents of the render threads.
+     * @return a future which is completed with the number of pages on the JavaFX application thread.
+     */
+    public CompletableFuture<Integer> open(File pdfFile, PDFLoader loader) {
+        dispose();
+        rendererPool = new PDFRendererPool(pdfFile, Runtime.getRuntime().availableProcessors(), loader);
+        final PDFRendererPool pool = rendererPool;
+        return pool.submit(PDFContinuousView::readPageBoxes)
+            .thenApplyAsync(boxes -> {
+                if (pool == rendererPool) {
+                    pageBoxes = boxes;
+                    layoutScale = 0.0f;
+                    scrollY = 0.0;
+                    currentPage.set(0);
+                    requestLayout();
+                }
+                return boxes.length;
+            }, Platform::runLater);
+    }
+
+    /**
+     * Cancel all pending pages, release the recycled images and the renderer pool.
+     */
+    public void dispose() {
+        for (PageSlot slot : slots) {
+            release(slot);
+            discard(slot);
+        }
+        slots.clear();
+        if (rendererPool != null) {
+            rendererPool.dispose();
+            rendererPool = null;
+        }
+        pageBoxes = null;
+        pageTops = null;
+        requestLayout();
+    }
+
+    public int getNumberOfPages() {return (pageBoxes != null) ? pageBoxes.length : 0;}
+
+    /**
+     * The zero-based index of the page at the top of the view.
+     *
+     * @return the current page property.
+     */
+    public ReadOnlyIntegerProperty currentPageProperty() {return currentPage.getReadOnlyProperty();}
+
+    public int getCurrentPage() {return currentPage.get();}
+
+    /**
+     * Scroll the top of a page to the top of the view.
+     *
+     * @param pageIndex the zero-based page index.
+     */
+    public void scrollToPage(int pageIndex) {
+        scrollToPagePending = pageIndex;
+        requestLayout();
+    }
+
+    /**
+     * Set the zoom of the pages, where 1.0 fits the widest page into the width of the view.
+     *
+     * @param zoom the zoom between MIN_ZOOM and 1.0.
+     */
+    public void setZoom(double zoom) {
+        this.zoom = Math.max(MIN_ZOOM, Math.min(zoom, 1.0));
+        requestLayout();
+    }
+
+    public double getZoom() {return zoom;}
+
+    /**
+     * Set the background color of the pages.
+     *
+     * @param backgroundColor the background color.
+     */
+    public void setBackgroundColor(Color backgroundColor) {
+        this.backgroundColor = backgroundColor;
+        requestLayout();
+    }
+
+    /**
+     * Get the current scale of the pages in pixels per point.
+     *
+     * @return the current scale.
+     */
+    public float getScale() {return layoutScale;}
+
+    /**
+     * Get the number of page slots, i.e., the number of recycled page images.
+     *
+     * @return the number of slots.
+     */
+    public int getSlotCount() {return slots.size();}
+
+    /**
+     * Get the total size of the recycled page images in bytes.
+     *
+     * @return the used bytes.
+     */
+    public long getUsedBytes() {
+        long bytes = 0;
+        for (PageSlot slot : slots) {
+            if (slot.image != null) bytes += 4L * slot.image.getCapacity();
+        }
+        return bytes;
+    }
+
+    // Must be called on a worker thread.
+    private static PDRectangle[] readPageBoxes(PDDocument document, PDFRenderer renderer) {
+        PDRectangle[] boxes = new PDRectangle[document.getNumberOfPages()];
+        for (int i = 0; i < boxes.length; i++) {
+            PDRectangle b = document.getPage(i).getBBox();
+            boxes[i] = new PDRectangle(b.getLowerLeftX(), b.getLowerLeftY(), b.getWidth(), b.getHeight());
+        }
+        return boxes;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        final double width = getWidth();
+        final double height = getHeight();
+        final double scrollBarWidth = scrollBar.prefWidth(-1);
+        scrollBar.resizeRelocate(width - scrollBarWidth, 0, scrollBarWidth, height);
+
+        final double viewWidth = width - scrollBarWidth;
+        if (pageBoxes == null || pageBoxes.length == 0 || rendererPool == null || viewWidth <= 2 * PAGE_GAP || height <= 0) {
+            for (PageSlot slot : slots) slot.hide();
+            return;
+        }
+
+        updatePageLayout(viewWidth);
+
+        final int n = pageBoxes.length;
+        if (scrollToPagePending >= 0) {
+            scrollY = pageTops[Math.min(scrollToPagePending, n - 1)] - PAGE_GAP;
+            scrollToPagePending = -1;
+        }
+        final double contentHeight = pageTops[n];
+        scrollY = Math.max(0.0, Math.min(scrollY, contentHeight - height));
+
+        updatingScrollBar = true;
+        scrollBar.setMax(Math.max(0.0, contentHeight - height));
+        scrollBar.setVisibleAmount(height);
+        scrollBar.setUnitIncrement(PAGE_GAP * 4);
+        scrollBar.setBlockIncrement(height);
+        scrollBar.setValue(scrollY);
+        updatingScrollBar = false;
+
+        final int firstVisible = pageAt(scrollY);
+        final int lastVisible = pageAt(scrollY + height);
+        final int firstInWindow = Math.max(0, firstVisible - PREFETCH_PAGES);
+        final int lastInWindow = Math.min(n - 1, lastVisible + PREFETCH_PAGES);
+        currentPage.set(firstVisible);
+
+        // Release the slots of pages which have left the window or have to be rendered differently.
+        for (PageSlot slot : slots) {
+            if (slot.inUse) {
+                int pageIndex = slot.key.getPageIndex();
+                if (pageIndex < firstInWindow || pageIndex > lastInWindow || ! slot.key.equals(pageKey(pageIndex))) {
+                    release(slot);
+                }
+            }
+        }
+
+        // The visible pages are acquired first so that they are rendered first.
+        for (int i = firstVisible; i <= lastVisible; i++) acquire(i);
+        for (int i = firstInWindow; i < firstVisible; i++) acquire(i);
+        for (int i = lastVisible + 1; i <= lastInWindow; i++) acquire(i);
+
+        for (PageSlot slot : slots) {
+            if (! slot.inUse) {
+                slot.hide();
+                continue;
+            }
+            int pageIndex = slot.key.getPageIndex();
+            double x = Math.floor((viewWidth - pageWidths[pageIndex]) / 2);
+            double y = Math.floor(pageTops[pageIndex] - scrollY);
+            double pageHeight = pageTops[pageIndex + 1] - pageTops[pageIndex] - PAGE_GAP;
+            slot.placeholder.setWidth(pageWidths[pageIndex]);
+            slot.placeholder.setHeight(pageHeight);
+            slot.placeholder.setFill(backgroundColor);
+            slot.placeholder.relocate(x, y);
+            slot.placeholder.setVisible(! slot.rendered);
+            slot.imageView.relocate(x, y);
+            // The image memory is written outside of AWTImage.update() while a slot is busy.
+            assert ! (slot.rendered && slot.isBusy()) : "Image of a busy slot is shown.";
+            slot.imageView.setImage(slot.rendered ? slot.image.getFXImage() : null);
+            slot.imageView.setVisible(slot.rendered);
+        }
+
+        trimIdleSlots();
+    }
+
+    private void updatePageLayout(double viewWidth) {
+        float maxPageWidth = 0.0f;
+        for (PDRectangle b : pageBoxes) maxPageWidth = Math.max(maxPageWidth, b.getWidth());
+        final float scale = (float) (zoom * (viewWidth - 2 * PAGE_GAP) / maxPageWidth);
+        if (scale == layoutScale && pageTops != null) return;
+
+        // Keep the same relative position within the page at the top of the view.
+        int anchorPage = 0;
+        double anchorFraction = 0.0;
+        if (pageTops != null) {
+            anchorPage = pageAt(scrollY);
+            double anchorTop = pageTops[anchorPage];
+            anchorFraction = (scrollY - anchorTop) / (pageTops[anchorPage + 1] - anchorTop);
+        }
+
+        final int n = pageBoxes.length;
+        pageTops = new double[n + 1];
+        pageWidths = new int[n];
+        pageTops[0] = PAGE_GAP;
+        for (int i = 0; i < n; i++) {
+            Dimension size = PageRendering.getImageSize(pageBoxes[i], new PageKey(i, scale, 0.0, backgroundColor));
+            pageWidths[i] = size.width;
+            pageTops[i + 1] = pageTops[i] + size.height + PAGE_GAP;
+        }
+        scrollY = pageTops[anchorPage] + anchorFraction * (pageTops[anchorPage + 1] - pageTops[anchorPage]);
+        layoutScale = scale;
+    }
+
+    // Binary search for the page which covers the given y position including the gap below it.
+    private int pageAt(double y) {
+        int low = 0;
+        int high = pageBoxes.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (pageTops[mid] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private PageKey pageKey(int pageIndex) {
+        return new PageKey(pageIndex, layoutScale, 0.0, backgroundColor);
+    }
+
+    private void acquire(int pageIndex) {
+        final PageKey key = pageKey(pageIndex);
+        PageSlot free = null;
+        for (PageSlot slot : slots) {
+            if (key.equals(slot.key) && (slot.inUse || slot.rendered || slot.isBusy())) {
+                // The page is already in the window, still rendered or still being rendered.
+                slot.inUse = true;
+                slot.lastUse = ++useCount;
+                return;
+            }
+            if (! slot.inUse && ! slot.isBusy() && (free == null || slot.lastUse < free.lastUse)) {
+                free = slot;
+            }
+        }
+        if (free == null) {
+            free = new PageSlot();
+            slots.add(free);
+        }
+        free.inUse = true;
+        free.lastUse = ++useCount;
+        render(free, key);
+    }
+
+    private void release(PageSlot slot) {
+        slot.inUse = false;
+        int ticket = slot.state.get();
+        if (ticket > 0 && slot.state.compareAndSet(ticket, IDLE)) {
+            // The task had not been started yet, so the slot can be reused immediately.
+            slot.future.cancel(false);
+            slot.rendered = false;
+            slot.key = null;
+        }
+    }
+
+    private void render(PageSlot slot, PageKey key) {
+        final Dimension size = PageRendering.getImageSize(pageBoxes[key.getPageIndex()], key);
+        if (slot.image == null) {
+            slot.image = new AWTImage(size.width, size.height);
+        } else {
+            // Reuses the memory of the slot as long as the new page fits into it.
+            slot.image.resize(size.width, size.height);
+        }
+        // The image must not be shown until the task has finished, see finish().
+        slot.imageView.setImage(null);
+        slot.key = key;
+        slot.rendered = false;
+
+        final PDFRendererPool pool = rendererPool;
+        final BufferedImage target = slot.image.getAWTImage();
+        final int ticket = nextTicket++;
+        if (nextTicket == Integer.MAX_VALUE) nextTicket = 1;
+        slot.state.set(ticket);
+        slot.future = pool.submit((document, renderer) -> {
+            if (! slot.state.compareAndSet(ticket, RUNNING)) return null;
+            boolean success = false;
+            try {
+                Graphics2D g2d = target.createGraphics();
+                try {
+                    PageRendering.renderPage(renderer, document.getPage(key.getPageIndex()), key, g2d);
+                } finally {
+                    g2d.dispose();
+                }
+                success = true;
+                return key;
+            } finally {
+                final boolean rendered = success;
+                Platform.runLater(() -> finish(slot, key, rendered));
+            }
+        });
+        slot.future.whenComplete((k, ex) -> {
+            if (ex != null && ! (ex instanceof CancellationException)) ex.printStackTrace();
+        });
+    }
+
+    // Must be called on JavaFX application thread.
+    private void finish(PageSlot slot, PageKey key, boolean rendered) {
+        slot.state.set(IDLE);
+        if (slot.discarded) {
+            slot.image.dispose();
+            return;
+        }
+        slot.rendered = rendered && key.equals(slot.key);
+        if (slot.rendered) {
+            // Upload the whole image which has been rendered behind the back of the AWTImage.
+            slot.image.update(g2d -> null);
+        }
+        requestLayout();
+    }
+
+    private void trimIdleSlots() {
+        int idleCount = 0;
+        for (PageSlot slot : slots) {
+            if (! slot.inUse) idleCount++;
+        }
+        while (idleCount > maxIdleSlots) {
+            PageSlot oldest = null;
+            for (PageSlot slot : slots) {
+                if (! slot.inUse && (oldest == null || slot.lastUse < oldest.lastUse)) oldest = slot;
+            }
+            discard(oldest);
+            slots.remove(oldest);
+            idleCount--;
+        }
+    }
+
+    private void discard(PageSlot slot) {
+        slot.discarded = true;
+        getChildren().removeAll(slot.imageView, slot.placeholder);
+        slot.imageView.setImage(null);
+        if (slot.image != null && ! slot.isBusy()) {
+            // A running task still renders into the image, so it is disposed when it has finished.
+            slot.image.dispose();
+        }
+    }
+
+}
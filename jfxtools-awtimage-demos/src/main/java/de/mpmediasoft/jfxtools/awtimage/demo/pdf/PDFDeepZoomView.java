@@ -0,0 +1,401 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import de.mpmediasoft.jfxtools.awtimage.AWTImage;
+import javafx.application.Platform;
+import javafx.scene.Cursor;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * A deep-zoom view of a single PDF page. Only the tiles of the page which are visible
+ * at the current zoom level are rendered. They are rendered concurrently by a
+ * PDFRendererPool with a translated and clipped graphics context and are cached per
+ * zoom level in a memory bounded ImageCache. So the memory use of this view only
+ * depends on the size of the viewport and the cache but not on the zoom level.
+ *
+ * While tiles are still missing, a low resolution preview of the whole page is shown
+ * scaled up in their place. The zoom levels are quantized, so that the cached tiles
+ * can be reused when zooming back and forth.
+ *
+ * The page can be moved by dragging it with the mouse and zoomed with the mouse wheel.
+ * All methods must be called on the JavaFX application thread.
+ *
+ * @author Michael Paus
+ */
+public class PDFDeepZoomView extends Region {
+
+    /**
+     * The default width and height of a tile.
+     */
+    public final static int DEFAULT_TILE_SIZE = 256;
+
+    private final static int ZOOM_STEPS_PER_OCTAVE = 4;
+    private final static int MIN_ZOOM_LEVEL = -5 * ZOOM_STEPS_PER_OCTAVE;
+    private final static int MAX_ZOOM_LEVEL = 6 * ZOOM_STEPS_PER_OCTAVE;
+    private final static int PREVIEW_SIZE = 1024;
+
+    private final int tileSize;
+    private final ImageCache<TileKey> cache;
+    private final Map<TileKey, CompletableFuture<BufferedImage>> pendingTiles = new HashMap<>();
+    private final ImageView previewView = new ImageView();
+    private final List<ImageView> tileViews = new ArrayList<>();
+    private final Rectangle clip = new Rectangle();
+
+    private PDFRendererPool rendererPool;
+    private int numberOfPages = 0;
+    private int pageIndex = 0;
+    private PDRectangle bBox;
+    private Color backgroundColor = Color.WHITE;
+    private int zoomLevel = 0;
+    private boolean fitPending = true;
+    private double offsetX = 0.0;
+    private double offsetY = 0.0;
+    private double dragX, dragY;
+
+    /**
+     * Create a new view with the default tile size.
+     *
+     * @param cacheBytes the maximum total size of all cached tiles in bytes.
+     */
+    public PDFDeepZoomView(long cacheBytes) {
+        this(cacheBytes, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Create a new view.
+     *
+     * @param cacheBytes the maximum total size of all cached tiles in bytes.
+     * @param tileSize the width and height of the tiles.
+     */
+    public PDFDeepZoomView(long cacheBytes, int tileSize) {
+        this.tileSize = tileSize;
+        this.cache = new ImageCache<>(cacheBytes);
+
+        previewView.setSmooth(true);
+        getChildren().add(previewView);
+
+        clip.widthProperty().bind(widthProperty());
+        clip.heightProperty().bind(heightProperty());
+        setClip(clip);
+
+        setCursor(Cursor.OPEN_HAND);
+        setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        setOnMouseDragged(e -> {
+            offsetX -= e.getX() - dragX;
+            offsetY -= e.getY() - dragY;
+            dragX = e.getX();
+            dragY = e.getY();
+            requestLayout();
+        });
+        setOnScroll(e -> {
+            if (e.getDeltaY() != 0.0) {
+                setZoomLevel(zoomLevel + (e.getDeltaY() > 0 ? 1 : -1), e.getX(), e.getY());
+            }
+            e.consume();
+        });
+    }
+
+    /**
+     * Open a PDF file and show its first page. The renderer pool of a previously
+     * opened file is disposed.
+     *
+     * @param pdfFile the PDF file.
+     * @return a future which is completed with the number of pages on the JavaFX application thread.
+     */
+    public CompletableFuture<Integer> open(File pdfFile) {
+        return open(pdfFile, PDFLoader.DEFAULT);
+    }
+
+    /**
+     * Open a PDF file and show its first page. The renderer pool of a previously
+     * opened file is disposed.
+     *
+     * @param pdfFile the PDF file.
+     * @param loader the settings used to open the documents of the render threads.
+     * @return a future which is completed with the number of pages on the JavaFX application thread.
+     */
+    public CompletableFuture<Integer> open(File pdfFile, PDFLoader loader) {
+        dispose();
+        rendererPool = new PDFRendererPool(pdfFile, Runtime.getRuntime().availableProcessors(), loader);
+        numberOfPages = 0;
+        final PDFRendererPool pool = rendererPool;
+        CompletableFuture<Integer> result = rendererPool.submit((document, renderer) -> document.getNumberOfPages())
+            .thenApplyAsync(n -> {
+                if (pool == rendererPool) numberOfPages = n;
+                return n;
+            }, Platform::runLater);
+        setPage(0);
+        return result;
+    }
+
+    /**
+     * Cancel all pending tiles, clear the cache and release the renderer pool.
+     */
+    public void dispose() {
+        cancelTiles(null);
+        cache.clear();
+        if (rendererPool != null) {
+            rendererPool.dispose();
+            rendererPool = null;
+        }
+        bBox = null;
+        previewView.setImage(null);
+        requestLayout();
+    }
+
+    /**
+     * Show another page of the document. The page is fitted into the view.
+     *
+     * @param pageIndex the zero-based page index.
+     */
+    public void setPage(int pageIndex) {
+        if (rendererPool == null) return;
+        this.pageIndex = pageIndex;
+        this.bBox = null;
+        this.fitPending = true;
+        previewView.setImage(null);
+        cancelTiles(null);
+        requestLayout();
+
+        final PDFRendererPool pool = rendererPool;
+        pool.submit((document, renderer) -> {
+            PDRectangle b = document.getPage(pageIndex).getBBox();
+            return new PDRectangle(b.getLowerLeftX(), b.getLowerLeftY(), b.getWidth(), b.getHeight());
+        }).whenComplete((b, ex) -> Platform.runLater(() -> {
+            if (ex != null) {
+                ex.printStackTrace();
+            } else if (pool == rendererPool && pageIndex == this.pageIndex) {
+                bBox = b;
+                requestPreview(pool, b);
+                requestLayout();
+            }
+        }));
+    }
+
+    public int getPage() {return pageIndex;}
+
+    public int getNumberOfPages() {return numberOfPages;}
+
+    /**
+     * Set the background color of the page.
+     *
+     * @param backgroundColor the background color.
+     */
+    public void setBackgroundColor(Color backgroundColor) {
+        this.backgroundColor = backgroundColor;
+        if (bBox != null) requestPreview(rendererPool, bBox);
+        requestLayout();
+    }
+
+    /**
+     * Get the current scale of the page in pixels per point.
+     *
+     * @return the current scale.
+     */
+    public float getScale() {return scaleOf(zoomLevel);}
+
+    /**
+     * Get the cache of the rendered tiles.
+     *
+     * @return the tile cache.
+     */
+    public ImageCache<TileKey> getCache() {return cache;}
+
+    /**
+     * Get the number of tiles which are still waiting to be rendered.
+     *
+     * @return the number of pending tiles.
+     */
+    public int getPendingTileCount() {return pendingTiles.size();}
+
+    /**
+     * Zoom in by one step around the center of the view.
+     */
+    public void zoomIn() {setZoomLevel(zoomLevel + 1, getWidth() / 2, getHeight() / 2);}
+
+    /**
+     * Zoom out by one step around the center of the view.
+     */
+    public void zoomOut() {setZoomLevel(zoomLevel - 1, getWidth() / 2, getHeight() / 2);}
+
+    /**
+     * Fit the page into the view.
+     */
+    public void fit() {
+        fitPending = true;
+        requestLayout();
+    }
+
+    private void setZoomLevel(int newZoomLevel, double pivotX, double pivotY) {
+        newZoomLevel = Math.max(MIN_ZOOM_LEVEL, Math.min(newZoomLevel, MAX_ZOOM_LEVEL));
+        if (newZoomLevel != zoomLevel) {
+            double factor = scaleOf(newZoomLevel) / scaleOf(zoomLevel);
+            offsetX = (offsetX + pivotX) * factor - pivotX;
+            offsetY = (offsetY + pivotY) * factor - pivotY;
+            zoomLevel = newZoomLevel;
+            fitPending = false;
+            requestLayout();
+        }
+    }
+
+    private static float scaleOf(int zoomLevel) {
+        return (float) Math.pow(2.0, (double) zoomLevel / ZOOM_STEPS_PER_OCTAVE);
+    }
+
+    private PageKey pageKey(float scale) {
+        return new PageKey(pageIndex, scale, 0.0, backgroundColor);
+    }
+
+    private void requestPreview(PDFRendererPool pool, PDRectangle b) {
+        final PageKey key = pageKey(PREVIEW_SIZE / Math.max(b.getWidth(), b.getHeight()));
+        pool.renderPage(key).whenComplete((image, ex) -> Platform.runLater(() -> {
+                if (ex != null) {
+                    ex.printStackTrace();
+                } else if (pool == rendererPool && key.equals(pageKey(key.getScale()))) {
+                    previewView.setImage(new AWTImage(image).getFXImage());
+                }
+            }));
+    }
+
+    @Override
+    protected void layoutChildren() {
+        final double viewWidth = getWidth();
+        final double viewHeight = getHeight();
+        if (bBox == null || rendererPool == null || viewWidth <= 0 || viewHeight <= 0) {
+            hideTileViews(0);
+            return;
+        }
+
+        if (fitPending) {
+            double fitScale = Math.min(viewWidth / bBox.getWidth(), viewHeight / bBox.getHeight());
+            zoomLevel = Math.max(MIN_ZOOM_LEVEL, Math.min((int) Math.floor(ZOOM_STEPS_PER_OCTAVE * Math.log(fitScale) / Math.log(2.0)), MAX_ZOOM_LEVEL));
+            fitPending = false;
+        }
+
+        final PageKey key = pageKey(getScale());
+        final Dimension size = PageRendering.getImageSize(bBox, key);
+
+        // Center the page if it is smaller than the view, otherwise keep it inside the view.
+        offsetX = (size.width <= viewWidth) ? (size.width - viewWidth) / 2 : Math.max(0, Math.min(offsetX, size.width - viewWidth));
+        offsetY = (size.height <= viewHeight) ? (size.height - viewHeight) / 2 : Math.max(0, Math.min(offsetY, size.height - viewHeight));
+
+        previewView.relocate(-offsetX, -offsetY);
+        previewView.setFitWidth(size.width);
+        previewView.setFitHeight(size.height);
+
+        final int columns = (size.width + tileSize - 1) / tileSize;
+        final int rows = (size.height + tileSize - 1) / tileSize;
+        final int firstColumn = Math.max(0, (int) Math.floor(offsetX / tileSize));
+        final int lastColumn = Math.min(columns - 1, (int) Math.floor((offsetX + viewWidth - 1) / tileSize));
+        final int firstRow = Math.max(0, (int) Math.floor(offsetY / tileSize));
+        final int lastRow = Math.min(rows - 1, (int) Math.floor((offsetY + viewHeight - 1) / tileSize));
+
+        final Set<TileKey> visibleTiles = new HashSet<>();
+        int viewCount = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                TileKey tileKey = new TileKey(key, tileSize, column, row);
+                visibleTiles.add(tileKey);
+                AWTImage tile = cache.get(tileKey);
+                if (tile != null) {
+                    ImageView tileView = getTileView(viewCount++);
+                    tileView.setImage(tile.getFXImage());
+                    tileView.relocate(tileKey.getX() - offsetX, tileKey.getY() - offsetY);
+                } else if (! pendingTiles.containsKey(tileKey)) {
+                    renderTile(tileKey, size);
+                }
+            }
+        }
+        hideTileViews(viewCount);
+
+        // The visible tiles must stay cached even if they need more than the cache limit.
+        cache.pin(visibleTiles);
+
+        // Tiles which are no longer visible are not worth rendering anymore.
+        cancelTiles(visibleTiles);
+    }
+
+    private ImageView getTileView(int index) {
+        if (index == tileViews.size()) {
+            ImageView tileView = new ImageView();
+            tileViews.add(tileView);
+            getChildren().add(tileView);
+        }
+        ImageView tileView = tileViews.get(index);
+        tileView.setVisible(true);
+        return tileView;
+    }
+
+    private void hideTileViews(int fromIndex) {
+        for (int i = fromIndex; i < tileViews.size(); i++) {
+            ImageView tileView = tileViews.get(i);
+            tileView.setVisible(false);
+            tileView.setImage(null);
+        }
+    }
+
+    private void renderTile(TileKey tileKey, Dimension size) {
+        final PDFRendererPool pool = rendererPool;
+        final int x = tileKey.getX();
+        final int y = tileKey.getY();
+        final int width = Math.min(tileSize, size.width - x);
+        final int height = Math.min(tileSize, size.height - y);
+
+        CompletableFuture<BufferedImage> future = pool.submit((document, renderer) -> {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2d = image.createGraphics();
+            try {
+                g2d.translate(-x, -y);
+                g2d.clipRect(x, y, width, height);
+                PageRendering.renderPage(renderer, document.getPage(tileKey.getPageKey().getPageIndex()), tileKey.getPageKey(), g2d);
+            } finally {
+                g2d.dispose();
+            }
+            return image;
+        });
+        pendingTiles.put(tileKey, future);
+        future.whenComplete((image, ex) -> Platform.runLater(() -> {
+            if (pendingTiles.get(tileKey) == future) {
+                pendingTiles.remove(tileKey);
+            }
+            if (image != null && pool == rendererPool) {
+                cache.put(tileKey, new AWTImage(image));
+                requestLayout();
+            } else if (ex != null && ! future.isCancelled()) {
+                ex.printStackTrace();
+            }
+        }));
+    }
+
+    private void cancelTiles(Set<TileKey> except) {
+        Iterator<Map.Entry<TileKey, CompletableFuture<BufferedImage>>> it = pendingTiles.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<TileKey, CompletableFuture<BufferedImage>> entry = it.next();
+            if (except == null || ! except.contains(entry.getKey())) {
+                entry.getValue().cancel(false);
+                it.remove();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * Immutable settings which define how a PDF document is opened.
+ *
+ * By default PDFBox reads the file through a buffered file and keeps all decoded
+ * streams in main memory. For very large documents, e.g., scanned PDFs of several
+ * hundred megabytes, the file can be memory-mapped instead, so that its content is
+ * held by the operating system's page cache and not on the Java heap. In addition
+ * the decoded streams can be cached in a scratch file which only uses a limited
+ * amount of main memory. Then the heap use for opening a document stays bounded.
+ *
+ * The main memory limit applies to each opened document. If several documents are
+ * open at the same time, e.g., one per render thread, use split() to share one limit
+ * between all of them.
+ *
+ * @author Michael Paus
+ */
+public final class PDFLoader {
+
+    /**
+     * The default settings of PDFBox.
+     */
+    public final static PDFLoader DEFAULT = new PDFLoader(false, -1, null);
+
+    /**
+     * The default amount of main memory used by the scratch file of a bounded-memory loader.
+     */
+    public final static long DEFAULT_MAX_MAIN_MEMORY_BYTES = 64L * 1024 * 1024;
+
+    // The lower limit of the main memory of a single document when split.
+    private final static long MIN_MAIN_MEMORY_BYTES = 1024L * 1024;
+
+    private final boolean memoryMapped;
+    private final long maxMainMemoryBytes;
+    private final File tempDir;
+
+    /**
+     * Create new settings.
+     *
+     * @param memoryMapped true if the file shall be memory-mapped. Files which are too large
+     *        to be mapped as a whole are read through a buffered file instead.
+     * @param maxMainMemoryBytes the maximum amount of main memory for the cached streams
+     *        before a scratch file is used or a negative value for main memory only.
+     * @param tempDir the directory of the scratch file or null for the default temporary directory.
+     */
+    public PDFLoader(boolean memoryMapped, long maxMainMemoryBytes, File tempDir) {
+        this.memoryMapped = memoryMapped;
+        this.maxMainMemoryBytes = maxMainMemoryBytes;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * Create settings which memory-map the file and use a scratch file with the default
+     * amount of main memory for the cached streams.
+     *
+     * @return the bounded-memory settings.
+     */
+    public static PDFLoader boundedMemory() {
+        return new PDFLoader(true, DEFAULT_MAX_MAIN_MEMORY_BYTES, null);
+    }
+
+    /**
+     * Create settings for a number of documents which are open at the same time and share
+     * the main memory of these settings, i.e., each of them gets an equal part of it (but
+     * at least one megabyte).
+     *
+     * @param documents the number of documents.
+     * @return the settings for each of the documents.
+     */
+    public PDFLoader split(int documents) {
+        if (maxMainMemoryBytes < 0 || documents <= 1) return this;
+        return new PDFLoader(memoryMapped, Math.max(maxMainMemoryBytes / documents, MIN_MAIN_MEMORY_BYTES), tempDir);
+    }
+
+    public boolean isMemoryMapped() {return memoryMapped;}
+
+    public long getMaxMainMemoryBytes() {return maxMainMemoryBytes;}
+
+    public File getTempDir() {return tempDir;}
+
+    /**
+     * Check whether the heap use of these settings is bounded.
+     *
+     * @return true if the file is memory-mapped and the streams are cached in a scratch file.
+     */
+    public boolean isBoundedMemory() {return memoryMapped && maxMainMemoryBytes >= 0;}
+
+    /**
+     * Open a PDF document with these settings. The returned document owns the
+     * file and the scratch file, which are both released when it is closed.
+     *
+     * @param pdfFile the PDF file.
+     * @return the opened document.
+     * @throws IOException if the document cannot be opened.
+     */
+    public PDDocument load(File pdfFile) throws IOException {
+        RandomAccessRead source = (memoryMapped && pdfFile.length() <= Integer.MAX_VALUE)
+            ? new RandomAccessReadMemoryMappedFile(pdfFile)
+            : new RandomAccessReadBufferedFile(pdfFile);
+        try {
+            return Loader.loadPDF(source, "", null, null, createStreamCache());
+        } catch (IOException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    private RandomAccessStreamCache.StreamCacheCreateFunction createStreamCache() {
+        if (maxMainMemoryBytes < 0) {
+            return IOUtils.createMemoryOnlyStreamCache();
+        }
+        final MemoryUsageSetting memoryUsageSetting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes).setTempDir(tempDir);
+        return () -> new ScratchFile(memoryUsageSetting);
+    }
+
+    @Override
+    public String toString() {
+        return "PDFLoader[memoryMapped=" + memoryMapped + ", maxMainMemoryBytes=" + maxMainMemoryBytes + ", tempDir=" + tempDir + "]";
+    }
+
+}
@@ -0,0 +1,230 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+/**
+ * A pool of worker threads which render pages of one PDF file concurrently.
+ * As PDDocument and PDFRenderer must not be shared between threads, each worker
+ * opens its own document and renderer when it gets its first task. The documents
+ * are opened with the given PDFLoader settings whose main memory limit is shared
+ * by all documents of the pool.
+ *
+ * Waiting tasks are started in the order of their priority and tasks of the same priority
+ * in the order of their submission. The futures returned by submit() are completed on a
+ * worker thread. Tasks whose
+ * futures are cancelled before they have been started are skipped. The futures of tasks
+ * which have not been started when the pool is disposed are cancelled.
+ *
+ * @author Michael Paus
+ */
+public class PDFRendererPool {
+
+    /**
+     * A task which is executed on a worker thread with the document and renderer of that worker.
+     *
+     * @param <T> the type of the result.
+     */
+    @FunctionalInterface
+    public interface RenderTask<T> {
+        T render(PDDocument document, PDFRenderer renderer) throws IOException;
+    }
+
+    /**
+     * The priority of tasks which are submitted without an explicit priority.
+     */
+    public final static int NORMAL_PRIORITY = 0;
+
+    // A submitted task together with its future.
+    private class PoolTask<T> implements Runnable, Comparable<PoolTask<?>> {
+        final RenderTask<T> task;
+        final int priority;
+        final long sequenceNumber = submissionCount.getAndIncrement();
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        PoolTask(RenderTask<T> task, int priority) {
+            this.task = task;
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(PoolTask<?> other) {
+            if (priority != other.priority) return Integer.compare(other.priority, priority);
+            return Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) return;
+            try {
+                Worker w = getWorker();
+                future.complete(task.render(w.document, w.renderer));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static class Worker {
+        final PDDocument document;
+        final PDFRenderer renderer;
+
+        Worker(PDDocument document) {
+            this.document = document;
+            this.renderer = new PDFRenderer(document);
+            this.renderer.setSubsamplingAllowed(true);
+        }
+    }
+
+    private final File pdfFile;
+    private final int numThreads;
+    private final PDFLoader loader;
+    private final ThreadPoolExecutor executorService;
+    private final AtomicLong submissionCount = new AtomicLong();
+    private final ThreadLocal<Worker> worker = new ThreadLocal<>();
+    private final List<Worker> workers = new ArrayList<>();
+
+    /**
+     * Create a pool with one thread per available processor.
+     *
+     * @param pdfFile the PDF file.
+     */
+    public PDFRendererPool(File pdfFile) {
+        this(pdfFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a pool with the given number of threads.
+     *
+     * @param pdfFile the PDF file.
+     * @param numThreads the number of worker threads.
+     */
+    public PDFRendererPool(File pdfFile, int numThreads) {
+        this(pdfFile, numThreads, PDFLoader.DEFAULT);
+    }
+
+    /**
+     * Create a pool with the given number of threads and loader settings.
+     *
+     * @param pdfFile the PDF file.
+     * @param numThreads the number of worker threads.
+     * @param loader the settings used to open the documents. Its main memory limit is split between them.
+     */
+    public PDFRendererPool(File pdfFile, int numThreads, PDFLoader loader) {
+        this.pdfFile = pdfFile;
+        this.numThreads = Math.max(numThreads, 1);
+        this.loader = loader.split(this.numThreads);
+        final AtomicInteger threadCount = new AtomicInteger();
+        // Only PoolTasks are executed, so the queue can order them by their priority.
+        this.executorService = new ThreadPoolExecutor(this.numThreads, this.numThreads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), runnable -> {
+            Thread t = new Thread(runnable);
+            t.setDaemon(true);
+            t.setName("PDFRendererPool-" + threadCount.incrementAndGet());
+            return t;
+        });
+    }
+
+    /**
+     * Get the number of worker threads.
+     *
+     * @return the number of worker threads.
+     */
+    public int getNumberOfThreads() {return numThreads;}
+
+    /**
+     * Submit a task with the normal priority to be executed on one of the worker threads.
+     *
+     * @param <T> the type of the result.
+     * @param task the task.
+     * @return a future which is completed with the result of the task on the worker thread.
+     */
+    public <T> CompletableFuture<T> submit(RenderTask<T> task) {
+        return submit(task, NORMAL_PRIORITY);
+    }
+
+    /**
+     * Submit a task to be executed on one of the worker threads. It is started before all
+     * waiting tasks with a lower priority. Running tasks are not interrupted.
+     *
+     * @param <T> the type of the result.
+     * @param task the task.
+     * @param priority the priority of the task, higher values are started first.
+     * @return a future which is completed with the result of the task on the worker thread.
+     */
+    public <T> CompletableFuture<T> submit(RenderTask<T> task, int priority) {
+        final PoolTask<T> poolTask = new PoolTask<>(task, priority);
+        executorService.execute(poolTask);
+        return poolTask.future;
+    }
+
+    /**
+     * Render a page into a new image of type TYPE_INT_ARGB_PRE on one of the worker threads.
+     *
+     * @param key the page and its rendering parameters.
+     * @return a future which is completed with the rendered page on the worker thread.
+     */
+    public CompletableFuture<BufferedImage> renderPage(PageKey key) {
+        return submit((document, renderer) -> PageRendering.renderPage(renderer, document.getPage(key.getPageIndex()), key));
+    }
+
+    /**
+     * Shut down the worker threads and close all documents once the running tasks have finished.
+     * The futures of tasks which have not been started yet are cancelled, i.e., completed with a CancellationException.
+     */
+    public void dispose() {
+        // Running tasks must not be interrupted, because that closes the channels of their documents.
+        executorService.shutdown();
+        List<Runnable> waitingTasks = new ArrayList<>();
+        executorService.getQueue().drainTo(waitingTasks);
+        for (Runnable r : waitingTasks) {
+            if (r instanceof PoolTask<?> poolTask) {
+                poolTask.future.cancel(false);
+            }
+        }
+        Thread closer = new Thread(() -> {
+            try {
+                executorService.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (workers) {
+                for (Worker w : workers) {
+                    try {
+                        w.document.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                workers.clear();
+            }
+        }, "PDFRendererPool-Closer");
+        closer.setDaemon(true);
+        closer.start();
+    }
+
+    // Must be called on a worker thread.
+    private Worker getWorker() throws IOException {
+        Worker w = worker.get();
+        if (w == null) {
+            w = new Worker(loader.load(pdfFile));
+            worker.set(w);
+            synchronized (workers) {
+                workers.add(w);
+            }
+        }
+        return w;
+    }
+
+}
@@ -0,0 +1,377 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * A full-text index of a PDF document which is built in the background. The text of
+ * the pages is extracted concurrently by a PDFRendererPool, i.e., with one document
+ * per worker thread, and is added to an inverted index which maps each word to its
+ * positions in the document. Together with the bounding box of every word on its
+ * page, this allows phrase searches whose hits can be highlighted on the rendered pages.
+ *
+ * The index can be searched while it is still being built. Then only the pages which
+ * have already been indexed are found. A complete index can be saved to a file, e.g.,
+ * the index file of a PageDiskCache, so that it does not have to be built again.
+ *
+ * All methods are thread-safe. The returned futures are completed on a background thread.
+ *
+ * @author Michael Paus
+ */
+public class PDFTextIndex {
+
+    private final static int MAGIC = 0x50545849; // "PTXI"
+    private final static int VERSION = 1;
+
+    /**
+     * A phrase found by a search.
+     */
+    public static final class Hit {
+        private final int pageIndex;
+        private final int position;
+        private final List<Rectangle2D> boxes;
+
+        Hit(int pageIndex, int position, List<Rectangle2D> boxes) {
+            this.pageIndex = pageIndex;
+            this.position = position;
+            this.boxes = boxes;
+        }
+
+        public int getPageIndex() {return pageIndex;}
+
+        /**
+         * Get the position of the first word of the hit on its page.
+         *
+         * @return the zero-based word position.
+         */
+        public int getPosition() {return position;}
+
+        /**
+         * Get the bounding boxes of the words of the hit in points, relative to the
+         * upper left corner of the page.
+         *
+         * @return the bounding boxes.
+         */
+        public List<Rectangle2D> getBoxes() {return boxes;}
+
+        @Override
+        public String toString() {
+            return "Hit[pageIndex=" + pageIndex + ", position=" + position + "]";
+        }
+    }
+
+    // The words of one page in reading order with their boxes as x, y, width, height.
+    private static final class PageText {
+        final float width;
+        final float height;
+        final String[] words;
+        final float[] boxes;
+
+        PageText(float width, float height, String[] words, float[] boxes) {
+            this.width = width;
+            this.height = height;
+            this.words = words;
+            this.boxes = boxes;
+        }
+
+        Rectangle2D getBox(int position) {
+            int i = 4 * position;
+            return new Rectangle2D.Float(boxes[i], boxes[i + 1], boxes[i + 2], boxes[i + 3]);
+        }
+    }
+
+    // The positions of a word as pairs of page index and word position.
+    private static final class Postings {
+        int[] data = new int[8];
+        int size = 0;
+
+        void add(int pageIndex, int position) {
+            if (size + 2 > data.length) data = Arrays.copyOf(data, 2 * data.length);
+            data[size++] = pageIndex;
+            data[size++] = position;
+        }
+    }
+
+    // Collects the words of a page together with their bounding boxes.
+    private static final class WordCollector extends PDFTextStripper {
+        final List<String> words = new ArrayList<>();
+        final List<float[]> boxes = new ArrayList<>();
+        final StringBuilder word = new StringBuilder();
+        float minX, minY, maxX, maxY;
+
+        @Override
+        protected void writeString(String text, List<TextPosition> textPositions) throws IOException {
+            for (TextPosition tp : textPositions) {
+                String unicode = tp.getUnicode();
+                if (unicode == null || unicode.isEmpty() || ! Character.isLetterOrDigit(unicode.codePointAt(0))) {
+                    endWord();
+                    continue;
+                }
+                float x = tp.getX();
+                float y = tp.getY() - tp.getHeight();
+                if (word.length() == 0) {
+                    minX = x;
+                    minY = y;
+                    maxX = x + tp.getWidth();
+                    maxY = tp.getY();
+                } else {
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x + tp.getWidth());
+                    maxY = Math.max(maxY, tp.getY());
+                }
+                word.append(unicode);
+            }
+            endWord();
+        }
+
+        void endWord() {
+            if (word.length() > 0) {
+                words.add(normalize(word.toString()));
+                boxes.add(new float[] {minX, minY, maxX - minX, maxY - minY});
+                word.setLength(0);
+            }
+        }
+
+        PageText extract(PDDocument document, int pageIndex) throws IOException {
+            setStartPage(pageIndex + 1);
+            setEndPage(pageIndex + 1);
+            setSortByPosition(true);
+            getText(document);
+            float[] flatBoxes = new float[4 * boxes.size()];
+            for (int i = 0; i < boxes.size(); i++) {
+                System.arraycopy(boxes.get(i), 0, flatBoxes, 4 * i, 4);
+            }
+            PDRectangle bBox = document.getPage(pageIndex).getBBox();
+            return new PageText(bBox.getWidth(), bBox.getHeight(), words.toArray(new String[0]), flatBoxes);
+        }
+    }
+
+    private final PageText[] pages;
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final List<CompletableFuture<PageText>> pendingPages = new ArrayList<>();
+    private int indexedPageCount = 0;
+
+    /**
+     * Create a new empty index.
+     *
+     * @param numberOfPages the number of pages of the document.
+     */
+    public PDFTextIndex(int numberOfPages) {
+        this.pages = new PageText[numberOfPages];
+    }
+
+    /**
+     * Build the index in the background. If the given index file exists and matches
+     * the document, the index is just loaded from it. Otherwise the text of all pages
+     * is extracted on the given pool and the complete index is saved to the file.
+     *
+     * @param pool the pool which extracts the text of the pages.
+     * @param indexFile the file of a persistent index or null.
+     * @return a future which is completed with this index when it is complete.
+     */
+    public CompletableFuture<PDFTextIndex> buildAsync(PDFRendererPool pool, File indexFile) {
+        if (indexFile != null && indexFile.isFile()) {
+            CompletableFuture<PDFTextIndex> loaded = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return load(indexFile) ? this : null;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            });
+            return loaded.thenCompose(index -> (index != null) ? CompletableFuture.completedFuture(index) : extractAsync(pool, indexFile));
+        }
+        return extractAsync(pool, indexFile);
+    }
+
+    private CompletableFuture<PDFTextIndex> extractAsync(PDFRendererPool pool, File indexFile) {
+        List<CompletableFuture<Void>> addedPages = new ArrayList<>(pages.length);
+        synchronized (this) {
+            for (int i = 0; i < pages.length; i++) {
+                final int pageIndex = i;
+                CompletableFuture<PageText> future = pool.submit((document, renderer) -> new WordCollector().extract(document, pageIndex));
+                pendingPages.add(future);
+                addedPages.add(future.thenAccept(pageText -> addPage(pageIndex, pageText)));
+            }
+        }
+        return CompletableFuture.allOf(addedPages.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            synchronized (this) {
+                pendingPages.clear();
+            }
+            if (indexFile != null) {
+                try {
+                    save(indexFile);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            return this;
+        });
+    }
+
+    /**
+     * Cancel the extraction of all pages which have not been started yet.
+     */
+    public synchronized void cancel() {
+        for (CompletableFuture<PageText> future : pendingPages) {
+            future.cancel(false);
+        }
+        pendingPages.clear();
+    }
+
+    public int getNumberOfPages() {return pages.length;}
+
+    /**
+     * Get the number of pages which have already been indexed.
+     *
+     * @return the number of indexed pages.
+     */
+    public synchronized int getIndexedPageCount() {return indexedPageCount;}
+
+    public synchronized boolean isComplete() {return indexedPageCount == pages.length;}
+
+    /**
+     * Get the size of a page as used for the boxes of the hits. This is the size of
+     * its bounding box in points, i.e., the size used by PageRendering.
+     *
+     * @param pageIndex the zero-based page index.
+     * @return the size of the page or null if the page has not been indexed yet.
+     */
+    public synchronized PDRectangle getPageSize(int pageIndex) {
+        PageText page = pages[pageIndex];
+        return (page != null) ? new PDRectangle(page.width, page.height) : null;
+    }
+
+    /**
+     * Search for all occurrences of a word or a phrase. The search ignores case,
+     * punctuation and white space.
+     *
+     * @param query the words to be searched for.
+     * @return the hits ordered by page and position.
+     */
+    public synchronized List<Hit> search(String query) {
+        String[] terms = normalize(query).split("[^\\p{L}\\p{N}]+");
+        terms = Arrays.stream(terms).filter(t -> ! t.isEmpty()).toArray(String[]::new);
+        if (terms.length == 0) return Collections.emptyList();
+
+        Postings first = postings.get(terms[0]);
+        if (first == null) return Collections.emptyList();
+
+        List<Hit> hits = new ArrayList<>();
+        for (int i = 0; i < first.size; i += 2) {
+            int pageIndex = first.data[i];
+            int position = first.data[i + 1];
+            PageText page = pages[pageIndex];
+            if (position + terms.length > page.words.length) continue;
+            boolean match = true;
+            for (int k = 1; k < terms.length && match; k++) {
+                match = terms[k].equals(page.words[position + k]);
+            }
+            if (match) {
+                List<Rectangle2D> boxes = new ArrayList<>(terms.length);
+                for (int k = 0; k < terms.length; k++) boxes.add(page.getBox(position + k));
+                hits.add(new Hit(pageIndex, position, boxes));
+            }
+        }
+        // The pages are indexed in the order in which they have been extracted.
+        hits.sort((a, b) -> (a.pageIndex != b.pageIndex) ? Integer.compare(a.pageIndex, b.pageIndex) : Integer.compare(a.position, b.position));
+        return hits;
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private synchronized void addPage(int pageIndex, PageText pageText) {
+        if (pages[pageIndex] != null) return;
+        pages[pageIndex] = pageText;
+        for (int position = 0; position < pageText.words.length; position++) {
+            postings.computeIfAbsent(pageText.words[position], w -> new Postings()).add(pageIndex, position);
+        }
+        indexedPageCount++;
+    }
+
+    /**
+     * Save the complete index to a file. Only the words and boxes of the pages are
+     * stored, the inverted index is rebuilt from them when the file is loaded.
+     *
+     * @param file the index file.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalStateException if the index is not complete.
+     */
+    public synchronized void save(File file) throws IOException {
+        if (! isComplete()) throw new IllegalStateException("Index is not complete.");
+
+        // Write a unique temporary file first, so that a partially written index is never found
+        // and concurrent saves of the same document do not interfere. It is deleted again if anything fails.
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(pages.length);
+                for (PageText page : pages) {
+                    out.writeFloat(page.width);
+                    out.writeFloat(page.height);
+                    out.writeInt(page.words.length);
+                    for (int i = 0; i < page.words.length; i++) {
+                        out.writeUTF(page.words[i]);
+                        for (int k = 0; k < 4; k++) out.writeFloat(page.boxes[4 * i + k]);
+                    }
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    // Returns false if the file does not belong to a document with this number of pages.
+    private boolean load(File file) throws IOException {
+        List<PageText> loaded = new ArrayList<>(pages.length);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != pages.length) {
+                return false;
+            }
+            for (int p = 0; p < pages.length; p++) {
+                float width = in.readFloat();
+                float height = in.readFloat();
+                String[] words = new String[in.readInt()];
+                float[] boxes = new float[4 * words.length];
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = in.readUTF();
+                    for (int k = 0; k < 4; k++) boxes[4 * i + k] = in.readFloat();
+                }
+                loaded.add(new PageText(width, height, words, boxes));
+            }
+        }
+        for (int p = 0; p < pages.length; p++) {
+            addPage(p, loaded.get(p));
+        }
+        return true;
+    }
+
+}
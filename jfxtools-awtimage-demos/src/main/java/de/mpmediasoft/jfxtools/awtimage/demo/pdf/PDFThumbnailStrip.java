@@ -0,0 +1,215 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import de.mpmediasoft.jfxtools.awtimage.AWTImage;
+import javafx.application.Platform;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.image.ImageView;
+import javafx.scene.paint.Color;
+
+/**
+ * A virtualised strip of page thumbnails. Only the cells which are currently shown
+ * by the ListView request their thumbnails, which are then rendered concurrently by
+ * a PDFRendererPool with one document per worker thread. The rendered thumbnails are
+ * kept in a memory bounded ImageCache and thumbnails of pages which have been scrolled
+ * out of view before they were started are cancelled.
+ *
+ * The items of the list are the zero-based page indices.
+ * All methods must be called on the JavaFX application thread.
+ *
+ * @author Michael Paus
+ */
+public class PDFThumbnailStrip extends ListView<Integer> {
+
+    /**
+     * The default size of the longer side of a thumbnail.
+     */
+    public final static int DEFAULT_THUMBNAIL_SIZE = 128;
+
+    private final static int CELL_PADDING = 24;
+
+    private final int thumbnailSize;
+    private final ImageCache<Integer> cache;
+    private final Map<Integer, CompletableFuture<BufferedImage>> pendingThumbnails = new HashMap<>();
+    // The cells created by the ListView, which may drop them again, e.g., when the skin is replaced.
+    private final Set<ThumbnailCell> cells = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private PDFRendererPool rendererPool;
+    private int backgroundArgb = 0xFFFFFFFF;
+
+    private class ThumbnailCell extends ListCell<Integer> {
+        private final ImageView imageView = new ImageView();
+
+        ThumbnailCell() {
+            cells.add(this);
+        }
+
+        @Override
+        protected void updateItem(Integer pageIndex, boolean empty) {
+            Integer oldPageIndex = getItem();
+            super.updateItem(pageIndex, empty);
+            if (empty || pageIndex == null) {
+                imageView.setImage(null);
+                setGraphic(null);
+                setText(null);
+            } else {
+                setText(String.valueOf(pageIndex + 1));
+                setGraphic(imageView);
+                AWTImage thumbnail = cache.get(pageIndex);
+                imageView.setImage(thumbnail != null ? thumbnail.getFXImage() : null);
+                if (thumbnail == null) requestThumbnail(pageIndex);
+            }
+            if (oldPageIndex != null && ! oldPageIndex.equals(pageIndex)) {
+                cancelIfNotShown(oldPageIndex);
+            }
+        }
+
+        void showThumbnail(int pageIndex, AWTImage thumbnail) {
+            if (! isEmpty() && getItem() != null && getItem() == pageIndex) {
+                imageView.setImage(thumbnail.getFXImage());
+            }
+        }
+    }
+
+    /**
+     * Create a new strip with the default thumbnail size.
+     *
+     * @param cacheBytes the maximum total size of all cached thumbnails in bytes.
+     */
+    public PDFThumbnailStrip(long cacheBytes) {
+        this(cacheBytes, DEFAULT_THUMBNAIL_SIZE);
+    }
+
+    /**
+     * Create a new strip.
+     *
+     * @param cacheBytes the maximum total size of all cached thumbnails in bytes.
+     * @param thumbnailSize the size of the longer side of a thumbnail.
+     */
+    public PDFThumbnailStrip(long cacheBytes, int thumbnailSize) {
+        this.thumbnailSize = thumbnailSize;
+        this.cache = new ImageCache<>(cacheBytes);
+        setFixedCellSize(thumbnailSize + CELL_PADDING);
+        setPrefWidth(thumbnailSize + 2 * CELL_PADDING);
+        setCellFactory(listView -> new ThumbnailCell());
+    }
+
+    /**
+     * Show the thumbnails of a PDF file. The renderer pool of a previously opened file is disposed.
+     *
+     * @param pdfFile the PDF file.
+     * @param numberOfPages the number of pages of the file.
+     */
+    public void open(File pdfFile, int numberOfPages) {
+        open(pdfFile, numberOfPages, PDFLoader.DEFAULT);
+    }
+
+    /**
+     * Show the thumbnails of a PDF file. The renderer pool of a previously opened file is disposed.
+     *
+     * @param pdfFile the PDF file.
+     * @param numberOfPages the number of pages of the file.
+     * @param loader the settings used to open the documents of the render threads.
+     */
+    public void open(File pdfFile, int numberOfPages, PDFLoader loader) {
+        dispose();
+        rendererPool = new PDFRendererPool(pdfFile, Runtime.getRuntime().availableProcessors(), loader);
+        List<Integer> pageIndices = new ArrayList<>(numberOfPages);
+        for (int i = 0; i < numberOfPages; i++) pageIndices.add(i);
+        getItems().setAll(pageIndices);
+    }
+
+    /**
+     * Set the background color of the thumbnails.
+     *
+     * @param backgroundColor the background color.
+     */
+    public void setBackgroundColor(Color backgroundColor) {
+        int argb = new PageKey(0, 1.0f, 0.0, backgroundColor).getBackgroundArgb();
+        if (argb != backgroundArgb) {
+            backgroundArgb = argb;
+            cancelThumbnails();
+            cache.clear();
+            refresh();
+        }
+    }
+
+    /**
+     * Get the cache of the rendered thumbnails.
+     *
+     * @return the thumbnail cache.
+     */
+    public ImageCache<Integer> getCache() {return cache;}
+
+    /**
+     * Cancel all pending thumbnails, clear the cache and release the renderer pool.
+     */
+    public void dispose() {
+        cancelThumbnails();
+        cache.clear();
+        if (rendererPool != null) {
+            rendererPool.dispose();
+            rendererPool = null;
+        }
+        getItems().clear();
+    }
+
+    private void requestThumbnail(int pageIndex) {
+        if (rendererPool == null || pendingThumbnails.containsKey(pageIndex)) return;
+
+        final PDFRendererPool pool = rendererPool;
+        final int size = thumbnailSize;
+        final int argb = backgroundArgb;
+        CompletableFuture<BufferedImage> future = pool.submit((document, renderer) -> {
+            PDPage page = document.getPage(pageIndex);
+            PDRectangle bBox = page.getBBox();
+            float scale = size / Math.max(bBox.getWidth(), bBox.getHeight());
+            return PageRendering.renderPage(renderer, page, new PageKey(pageIndex, scale, 0.0, argb));
+        });
+        pendingThumbnails.put(pageIndex, future);
+        future.whenComplete((image, ex) -> Platform.runLater(() -> {
+            if (pendingThumbnails.get(pageIndex) == future) {
+                pendingThumbnails.remove(pageIndex);
+            }
+            if (image != null && pool == rendererPool && argb == backgroundArgb) {
+                AWTImage thumbnail = new AWTImage(image);
+                cache.put(pageIndex, thumbnail);
+                for (ThumbnailCell cell : cells) {
+                    cell.showThumbnail(pageIndex, thumbnail);
+                }
+            } else if (ex != null && ! future.isCancelled()) {
+                ex.printStackTrace();
+            }
+        }));
+    }
+
+    private void cancelIfNotShown(int pageIndex) {
+        for (ThumbnailCell cell : cells) {
+            if (! cell.isEmpty() && cell.getItem() != null && cell.getItem() == pageIndex) return;
+        }
+        CompletableFuture<BufferedImage> future = pendingThumbnails.remove(pageIndex);
+        if (future != null) future.cancel(false);
+    }
+
+    private void cancelThumbnails() {
+        for (CompletableFuture<BufferedImage> future : pendingThumbnails.values()) {
+            future.cancel(false);
+        }
+        pendingThumbnails.clear();
+    }
+
+}
@@ -0,0 +1,275 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+import de.mpmediasoft.jfxtools.awtimage.AWTImage;
+
+/**
+ * A persistent cache of rendered PDF pages on disk. The entries are keyed by a hash
+ * of the content of the PDF file and all parameters of the PageKey, so that reopening
+ * a document finds its pages again even if the file has been renamed or copied.
+ *
+ * Each entry is a small header followed by the raw premultiplied ARGB pixels in native
+ * byte order. So an entry can be memory-mapped and wrapped into an AWTImage without
+ * decoding and without any copy on the Java heap. The total size of the cache is bounded
+ * and the least recently used entries are evicted, where the last modification time of
+ * an entry file serves as its access time. The text index of a document can be kept
+ * in the cache as well (see getIndexFile()) and is then counted and evicted like a page.
+ *
+ * The load() and store() methods can be called concurrently on any thread. As store()
+ * writes the entry on the calling thread, it should not be called on the JavaFX
+ * application thread.
+ *
+ * @author Michael Paus
+ */
+public class PageDiskCache {
+
+    private final static String SUFFIX = ".argb";
+    private final static String INDEX_SUFFIX = ".idx";
+    private final static int MAGIC = 0x41524742; // "ARGB"
+    private final static int HEADER_SIZE = 32;
+    private final static int NATIVE_ORDER = (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN) ? 1 : 0;
+
+    private final File directory;
+    private final long maxBytes;
+
+    private long usedBytes;
+
+    /**
+     * A cached page which has been memory-mapped from disk.
+     */
+    public static final class CachedPage {
+        private final ByteBuffer pixels;
+        private final int width;
+        private final int height;
+
+        CachedPage(ByteBuffer pixels, int width, int height) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getWidth() {return width;}
+
+        public int getHeight() {return height;}
+
+        /**
+         * Wrap the mapped pixels into a new AWTImage without any copy.
+         * Must be called on the JavaFX application thread.
+         *
+         * @return the new image.
+         */
+        public AWTImage toAWTImage() {
+            return new AWTImage(pixels, width, height);
+        }
+    }
+
+    /**
+     * Create a new cache in the given directory, which is created if necessary.
+     *
+     * @param directory the cache directory.
+     * @param maxBytes the maximum total size of all entries in bytes.
+     * @throws IOException if the directory cannot be created.
+     */
+    public PageDiskCache(File directory, long maxBytes) throws IOException {
+        Files.createDirectories(directory.toPath());
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        for (File file : listEntries()) {
+            usedBytes += file.length();
+        }
+    }
+
+    /**
+     * Get the cache directory.
+     *
+     * @return the cache directory.
+     */
+    public File getDirectory() {return directory;}
+
+    /**
+     * Compute the SHA-256 hash of the content of a file, which identifies a document
+     * in this cache. As this reads the whole file, it should not be called on the
+     * JavaFX application thread.
+     *
+     * @param file the file.
+     * @return the hash as a hex string.
+     * @throws IOException if the file cannot be read.
+     */
+    public static String hashFile(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Load a page from the cache by memory-mapping its entry.
+     *
+     * @param documentHash the hash of the document as returned by hashFile().
+     * @param key the page key.
+     * @return the cached page or null if there is no valid entry.
+     */
+    public CachedPage load(String documentHash, PageKey key) {
+        File file = entryFile(documentHash, key);
+        if (! file.isFile()) return null;
+
+        // PRIVATE mapping is copy-on-write, so the image can be rendered into without changing the entry.
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.read(header, 0) != HEADER_SIZE) return null;
+            header.flip();
+            int magic = header.getInt();
+            int byteOrder = header.getInt();
+            int width = header.getInt();
+            int height = header.getInt();
+            long pixelBytes = 4L * width * height;
+            if (magic != MAGIC || byteOrder != NATIVE_ORDER || width <= 0 || height <= 0 || channel.size() != HEADER_SIZE + pixelBytes) {
+                return null;
+            }
+            MappedByteBuffer pixels = channel.map(FileChannel.MapMode.PRIVATE, HEADER_SIZE, pixelBytes);
+            file.setLastModified(System.currentTimeMillis());
+            return new CachedPage(pixels, width, height);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Store a rendered page on the calling thread. The image must be of type TYPE_INT_ARGB_PRE.
+     *
+     * @param documentHash the hash of the document as returned by hashFile().
+     * @param key the page key.
+     * @param image the rendered page.
+     * @throws IOException if the entry cannot be written.
+     */
+    public void store(String documentHash, PageKey key, BufferedImage image) throws IOException {
+        store(entryFile(documentHash, key), image);
+    }
+
+    /**
+     * Get the file for the text index of a document in this cache. An existing index
+     * file is marked as recently used. Call indexFileWritten() after writing it.
+     *
+     * @param documentHash the hash of the document as returned by hashFile().
+     * @return the index file, which may not exist yet.
+     */
+    public File getIndexFile(String documentHash) {
+        File file = new File(directory, documentHash + INDEX_SUFFIX);
+        if (file.isFile()) file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Count a newly written index file and evict the least recently used entries if the
+     * cache has become too large.
+     *
+     * @param indexFile the index file as returned by getIndexFile().
+     */
+    public synchronized void indexFileWritten(File indexFile) {
+        long total = 0;
+        for (File entry : listEntries()) total += entry.length();
+        usedBytes = total;
+        evict(indexFile);
+    }
+
+    private File entryFile(String documentHash, PageKey key) {
+        return new File(directory, documentHash
+            + "-" + key.getPageIndex()
+            + "-" + Integer.toHexString(Float.floatToIntBits(key.getScale()))
+            + "-" + Long.toHexString(Double.doubleToLongBits(key.getRotationDeg()))
+            + "-" + Integer.toHexString(key.getBackgroundArgb())
+            + SUFFIX);
+    }
+
+    private void store(File file, BufferedImage image) throws IOException {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        final long entryBytes = HEADER_SIZE + 4L * width * height;
+        if (entryBytes > maxBytes) return;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(NATIVE_ORDER).putInt(width).putInt(height);
+        header.clear();
+
+        // Write a temporary file first, so that a partially written entry is never found.
+        // It is deleted again if anything fails.
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(header);
+                ByteBuffer chunk = ByteBuffer.allocateDirect(256 * 1024).order(ByteOrder.nativeOrder());
+                int pixelCount = width * height;
+                for (int offset = 0; offset < pixelCount; ) {
+                    int n = Math.min(chunk.capacity() / 4, pixelCount - offset);
+                    chunk.clear();
+                    chunk.asIntBuffer().put(data, offset, n);
+                    chunk.limit(4 * n);
+                    while (chunk.hasRemaining()) channel.write(chunk);
+                    offset += n;
+                }
+            }
+            synchronized (this) {
+                long oldBytes = file.isFile() ? file.length() : 0;
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                usedBytes += entryBytes - oldBytes;
+                evict(file);
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    // Must be called while holding the lock of this cache.
+    private void evict(File keep) {
+        if (usedBytes <= maxBytes) return;
+        File[] entries = listEntries();
+        // The modification times are read only once, because load() may change them concurrently while sorting.
+        Map<File, Long> lastModified = new HashMap<>();
+        for (File entry : entries) lastModified.put(entry, entry.lastModified());
+        Arrays.sort(entries, Comparator.comparingLong(lastModified::get));
+        for (File entry : entries) {
+            if (usedBytes <= maxBytes) break;
+            if (entry.equals(keep)) continue; // Never evict what was just added.
+            long length = entry.length();
+            if (entry.delete()) {
+                usedBytes -= length;
+            }
+        }
+    }
+
+    private File[] listEntries() {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(SUFFIX) || name.endsWith(INDEX_SUFFIX));
+        return (entries != null) ? entries : new File[0];
+    }
+
+}
@@ -0,0 +1,107 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import javafx.scene.paint.Color;
+
+/**
+ * An immutable key which identifies a rendered PDF page by its page index
+ * and all parameters which have an influence on the rendering result.
+ *
+ * @author Michael Paus
+ */
+public final class PageKey {
+
+    private final int pageIndex;
+    private final float scale;
+    private final double rotationDeg;
+    private final int backgroundArgb;
+
+    /**
+     * Create a new key.
+     *
+     * @param pageIndex the zero-based page index.
+     * @param scale the scale (pixels per point).
+     * @param rotationDeg the rotation angle in degrees.
+     * @param backgroundArgb the non-premultiplied ARGB background color.
+     */
+    public PageKey(int pageIndex, float scale, double rotationDeg, int backgroundArgb) {
+        this.pageIndex = pageIndex;
+        this.scale = scale;
+        this.rotationDeg = rotationDeg;
+        this.backgroundArgb = backgroundArgb;
+    }
+
+    /**
+     * Create a new key with a JavaFX background color.
+     *
+     * @param pageIndex the zero-based page index.
+     * @param scale the scale (pixels per point).
+     * @param rotationDeg the rotation angle in degrees.
+     * @param background the background color.
+     */
+    public PageKey(int pageIndex, float scale, double rotationDeg, Color background) {
+        this(pageIndex, scale, rotationDeg, toArgb(background));
+    }
+
+    public int getPageIndex() {return pageIndex;}
+
+    public float getScale() {return scale;}
+
+    public double getRotationDeg() {return rotationDeg;}
+
+    public int getBackgroundArgb() {return backgroundArgb;}
+
+    public java.awt.Color getAWTBackground() {return new java.awt.Color(backgroundArgb, true);}
+
+    /**
+     * Derive a key for another page with the same rendering parameters.
+     *
+     * @param pageIndex the zero-based page index.
+     * @return the new key.
+     */
+    public PageKey withPageIndex(int pageIndex) {
+        return new PageKey(pageIndex, scale, rotationDeg, backgroundArgb);
+    }
+
+    /**
+     * Derive a key for the same page with another scale.
+     *
+     * @param scale the scale (pixels per point).
+     * @return the new key.
+     */
+    public PageKey withScale(float scale) {
+        return new PageKey(pageIndex, scale, rotationDeg, backgroundArgb);
+    }
+
+    private static int toArgb(Color c) {
+        return ((int) Math.round(c.getOpacity() * 255) << 24)
+             | ((int) Math.round(c.getRed() * 255) << 16)
+             | ((int) Math.round(c.getGreen() * 255) << 8)
+             | ((int) Math.round(c.getBlue() * 255));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = pageIndex;
+        result = 31 * result + Float.floatToIntBits(scale);
+        result = 31 * result + Double.hashCode(rotationDeg);
+        result = 31 * result + backgroundArgb;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (! (obj instanceof PageKey)) return false;
+        PageKey other = (PageKey) obj;
+        return pageIndex == other.pageIndex
+            && Float.floatToIntBits(scale) == Float.floatToIntBits(other.scale)
+            && Double.doubleToLongBits(rotationDeg) == Double.doubleToLongBits(other.rotationDeg)
+            && backgroundArgb == other.backgroundArgb;
+    }
+
+    @Override
+    public String toString() {
+        return "PageKey[page=" + pageIndex + ", scale=" + scale + ", rotation=" + rotationDeg + ", background=" + Integer.toHexString(backgroundArgb) + "]";
+    }
+
+}
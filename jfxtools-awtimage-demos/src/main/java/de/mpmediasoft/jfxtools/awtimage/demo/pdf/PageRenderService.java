@@ -0,0 +1,341 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import de.mpmediasoft.jfxtools.awtimage.AWTImage;
+import javafx.application.Platform;
+
+/**
+ * A service which renders PDF pages in the background and keeps the results in an
+ * ImageCache. Neighbouring pages can be pre-rendered via prefetch(), so that paging
+ * through a document does not have to wait for the renderer.
+ *
+ * The pages are rendered concurrently by a PDFRendererPool, so the requested page,
+ * its preview and the prefetched pages do not have to wait for each other. They are
+ * rendered into plain BufferedImages of type TYPE_INT_ARGB_PRE which are then wrapped
+ * into AWTImages on the JavaFX application thread without any copy.
+ *
+ * Optionally the rendered pages are also stored in a PageDiskCache, so that they can
+ * just be memory-mapped when the same document is opened again.
+ *
+ * For pages which take long to render, a quick low resolution preview can be
+ * requested via requestPreview() before the page itself is requested.
+ *
+ * Previews are rendered before requested pages and requested pages before prefetched
+ * pages, as far as they are still waiting for a render thread.
+ *
+ * All public methods must be called on the JavaFX application thread and all returned
+ * futures are completed on the JavaFX application thread.
+ *
+ * @author Michael Paus
+ */
+public class PageRenderService {
+
+    // The priorities of the tasks in the renderer pool.
+    private final static int PREFETCH_PRIORITY = PDFRendererPool.NORMAL_PRIORITY;
+    private final static int PAGE_PRIORITY = PREFETCH_PRIORITY + 1;
+    private final static int PREVIEW_PRIORITY = PREFETCH_PRIORITY + 2;
+
+    private final File pdfFile;
+    private final ImageCache<PageKey> cache;
+    private final PDFRendererPool rendererPool;
+    private final Map<PageKey, PageTask> pendingTasks = new HashMap<>();
+
+    private PageTask previewTask;
+    private boolean disposed = false;
+    private volatile PageDiskCache diskCache;
+    private volatile String documentHash;
+    private CompletableFuture<String> documentHashFuture;
+
+    private static class PageTask {
+        final PageKey key;
+        final float previewFactor;
+        final CompletableFuture<AWTImage> future = new CompletableFuture<>();
+        boolean prefetch;
+        volatile boolean started = false;
+        CompletableFuture<Supplier<AWTImage>> renderFuture;
+
+        PageTask(PageKey key, boolean prefetch) {
+            this(key, prefetch, 0.0f);
+        }
+
+        PageTask(PageKey key, boolean prefetch, float previewFactor) {
+            this.key = key;
+            this.prefetch = prefetch;
+            this.previewFactor = previewFactor;
+        }
+
+        boolean isPreview() {return previewFactor > 0.0f;}
+
+        void cancel() {
+            future.cancel(false);
+            if (renderFuture != null) renderFuture.cancel(false);
+        }
+    }
+
+    /**
+     * Create a new service for the given PDF file with one render thread per available processor.
+     *
+     * @param pdfFile the PDF file.
+     * @param cacheBytes the maximum total size of all cached pages in bytes.
+     */
+    public PageRenderService(File pdfFile, long cacheBytes) {
+        this(pdfFile, cacheBytes, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new service for the given PDF file.
+     *
+     * @param pdfFile the PDF file.
+     * @param cacheBytes the maximum total size of all cached pages in bytes.
+     * @param numThreads the number of render threads.
+     */
+    public PageRenderService(File pdfFile, long cacheBytes, int numThreads) {
+        this(pdfFile, cacheBytes, numThreads, PDFLoader.DEFAULT);
+    }
+
+    /**
+     * Create a new service for the given PDF file.
+     *
+     * @param pdfFile the PDF file.
+     * @param cacheBytes the maximum total size of all cached pages in bytes.
+     * @param numThreads the number of render threads.
+     * @param loader the settings used to open the documents of the render threads.
+     */
+    public PageRenderService(File pdfFile, long cacheBytes, int numThreads, PDFLoader loader) {
+        this.pdfFile = pdfFile;
+        this.cache = new ImageCache<>(cacheBytes);
+        this.rendererPool = new PDFRendererPool(pdfFile, numThreads, loader);
+    }
+
+    /**
+     * Get the PDF file of this service.
+     *
+     * @return the PDF file.
+     */
+    public File getPDFFile() {return pdfFile;}
+
+    /**
+     * Get the cache of this service.
+     *
+     * @return the page cache.
+     */
+    public ImageCache<PageKey> getCache() {return cache;}
+
+    /**
+     * Set a persistent cache for the rendered pages. The content hash of the document
+     * is computed in the background and the disk cache is used as soon as it is known.
+     *
+     * @param diskCache the disk cache or null.
+     */
+    public void setDiskCache(PageDiskCache diskCache) {
+        assert Platform.isFxApplicationThread() : "Not called on JavaFX application thread.";
+        this.diskCache = diskCache;
+        if (diskCache != null && documentHashFuture == null) {
+            documentHashFuture = CompletableFuture.supplyAsync(() -> {
+                try {
+                    documentHash = PageDiskCache.hashFile(pdfFile);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                return documentHash;
+            });
+        }
+    }
+
+    /**
+     * Get the content hash of the document which is computed when a disk cache is set.
+     *
+     * @return the content hash or null if it is not known (yet).
+     */
+    public String getDocumentHash() {return documentHash;}
+
+    /**
+     * Get the content hash of the document when it has been computed.
+     *
+     * @return a future which is completed with the content hash (or null if it cannot be
+     *         computed) on a background thread or null if no disk cache has been set.
+     */
+    public CompletableFuture<String> getDocumentHashAsync() {return documentHashFuture;}
+
+    /**
+     * Count the pages of the document on one of the render threads, which have to open
+     * the document for rendering anyway. So a huge document is not parsed on the JavaFX
+     * application thread.
+     *
+     * @return a future which is completed with the number of pages.
+     */
+    public CompletableFuture<Integer> countPagesAsync() {
+        assert Platform.isFxApplicationThread() : "Not called on JavaFX application thread.";
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+        rendererPool.submit((document, renderer) -> document.getNumberOfPages(), PAGE_PRIORITY).whenComplete((n, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(n);
+            }
+        }));
+        return result;
+    }
+
+    /**
+     * Request a rendered page. If the page is cached, the returned future is already
+     * completed. Otherwise all waiting prefetches of other pages are cancelled and the page
+     * is queued before any waiting prefetches but after waiting previews. If the page is
+     * already being prefetched, that rendering is used and keeps its position in the queue.
+     *
+     * @param key the page key.
+     * @return a future which is completed with the rendered page.
+     */
+    public CompletableFuture<AWTImage> requestPage(PageKey key) {
+        assert Platform.isFxApplicationThread() : "Not called on JavaFX application thread.";
+        AWTImage image = cache.get(key);
+        if (image != null) {
+            return CompletableFuture.completedFuture(image);
+        }
+
+        cancelPrefetches(key);
+
+        PageTask task = pendingTasks.get(key);
+        if (task != null) {
+            task.prefetch = false;
+            return task.future;
+        }
+        return submit(new PageTask(key, false)).future;
+    }
+
+    /**
+     * Request a quick low resolution preview of a page which is queued before all waiting
+     * pages and prefetches. The preview is not cached and a previous preview which has not been
+     * started yet is cancelled. If the page itself is already cached or pending, the
+     * returned future is completed with null, because a preview would not be any faster.
+     * The preview has to be scaled up by 1/previewFactor for display.
+     *
+     * @param key the page key.
+     * @param previewFactor the fraction of the final scale, e.g., 0.25.
+     * @return a future which is completed with the rendered preview or null.
+     */
+    public CompletableFuture<AWTImage> requestPreview(PageKey key, float previewFactor) {
+        assert Platform.isFxApplicationThread() : "Not called on JavaFX application thread.";
+        if (previewTask != null && ! previewTask.started) {
+            previewTask.cancel();
+        }
+        previewTask = null;
+
+        if (cache.contains(key) || pendingTasks.containsKey(key)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        cancelPrefetches(key);
+        previewTask = new PageTask(key, false, previewFactor);
+        return submit(previewTask).future;
+    }
+
+    /**
+     * Pre-render the given pages in the background unless they are already cached or pending.
+     * Prefetches from a previous call which have not been started yet are cancelled.
+     *
+     * @param keys the keys of the pages to be pre-rendered in the order of their priority.
+     */
+    public void prefetch(List<PageKey> keys) {
+        assert Platform.isFxApplicationThread() : "Not called on JavaFX application thread.";
+        cancelPrefetches(null);
+        for (PageKey key : keys) {
+            if (! cache.contains(key) && ! pendingTasks.containsKey(key)) {
+                submit(new PageTask(key, true));
+            }
+        }
+    }
+
+    /**
+     * Cancel all pending tasks and release the renderer pool of this service.
+     */
+    public void dispose() {
+        assert Platform.isFxApplicationThread() : "Not called on JavaFX application thread.";
+        for (PageTask task : pendingTasks.values()) {
+            task.cancel();
+        }
+        pendingTasks.clear();
+        if (previewTask != null) {
+            previewTask.cancel();
+            previewTask = null;
+        }
+        cache.clear();
+        disposed = true;
+        rendererPool.dispose();
+    }
+
+    private void cancelPrefetches(PageKey except) {
+        List<PageKey> cancelled = new ArrayList<>();
+        for (PageTask task : pendingTasks.values()) {
+            if (task.prefetch && ! task.started && ! task.key.equals(except)) {
+                task.cancel();
+                cancelled.add(task.key);
+            }
+        }
+        pendingTasks.keySet().removeAll(cancelled);
+    }
+
+    private PageTask submit(PageTask task) {
+        if (! task.isPreview()) {
+            pendingTasks.put(task.key, task);
+        }
+        final int priority = task.isPreview() ? PREVIEW_PRIORITY : task.prefetch ? PREFETCH_PRIORITY : PAGE_PRIORITY;
+        task.renderFuture = rendererPool.submit((document, renderer) -> {
+            task.started = true;
+            if (task.isPreview()) {
+                BufferedImage preview = PageRendering.renderPreview(renderer, document.getPage(task.key.getPageIndex()), task.key, task.previewFactor);
+                return () -> new AWTImage(preview);
+            }
+
+            final PageDiskCache disk = diskCache;
+            final String hash = documentHash;
+            if (disk != null && hash != null) {
+                PageDiskCache.CachedPage cachedPage = disk.load(hash, task.key);
+                if (cachedPage != null) {
+                    return cachedPage::toAWTImage;
+                }
+            }
+            BufferedImage bufferedImage = PageRendering.renderPage(renderer, document.getPage(task.key.getPageIndex()), task.key);
+            if (disk != null && hash != null) {
+                // Written before the page is handed out, because it may be drawn into afterwards, e.g., by a SearchHighlighter.
+                try {
+                    disk.store(hash, task.key, bufferedImage);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            return () -> new AWTImage(bufferedImage);
+        }, priority);
+        task.renderFuture.whenComplete((imageFactory, error) -> Platform.runLater(() -> finish(task, imageFactory, error)));
+        return task;
+    }
+
+    // Must be called on JavaFX application thread.
+    private void finish(PageTask task, Supplier<AWTImage> imageFactory, Throwable error) {
+        if (task.isPreview()) {
+            if (previewTask == task) previewTask = null;
+        } else if (pendingTasks.get(task.key) == task) {
+            pendingTasks.remove(task.key);
+        }
+        if (error != null) {
+            task.future.completeExceptionally(error);
+        } else if (! disposed) {
+            // The AWTImage must be created on the JavaFX application thread.
+            AWTImage image = imageFactory.get();
+            if (! task.isPreview()) {
+                cache.put(task.key, image);
+            }
+            task.future.complete(image);
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+/**
+ * Some helper methods to render a PDF page with a given scale, rotation
+ * and background color like the PDFViewerDemo2 does.
+ *
+ * @author Michael Paus
+ */
+public final class PageRendering {
+
+    private final static java.awt.Color CLEAR_COLOR = new java.awt.Color(0, 0, 0, 0);
+
+    private final static RenderingHints PREVIEW_HINTS = new RenderingHints(null);
+    static {
+        PREVIEW_HINTS.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+        PREVIEW_HINTS.put(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        PREVIEW_HINTS.put(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        PREVIEW_HINTS.put(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        PREVIEW_HINTS.put(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+    }
+
+    private PageRendering() {}
+
+    /**
+     * Get the transformation from the scaled page coordinates into the image coordinates.
+     *
+     * @param page the page.
+     * @param key the rendering parameters.
+     * @return the transformation.
+     */
+    public static AffineTransform getImageTransform(PDPage page, PageKey key) {
+        return getImageTransform(page.getBBox(), key);
+    }
+
+    /**
+     * Get the transformation from the scaled page coordinates into the image coordinates.
+     *
+     * @param bBox the bounding box of the page.
+     * @param key the rendering parameters.
+     * @return the transformation.
+     */
+    public static AffineTransform getImageTransform(PDRectangle bBox, PageKey key) {
+        if (key.getRotationDeg() != 0.0) {
+            AffineTransform rot = AffineTransform.getRotateInstance(Math.toRadians(key.getRotationDeg()));
+            Rectangle2D rotRectBnds = rot.createTransformedShape(getPageRect(bBox, key)).getBounds2D();
+
+            AffineTransform combTrafo = AffineTransform.getTranslateInstance(-rotRectBnds.getMinX(), -rotRectBnds.getMinY());
+            combTrafo.concatenate(rot);
+            return combTrafo;
+        } else {
+            return new AffineTransform();
+        }
+    }
+
+    /**
+     * Get the size of the image which is needed to render the page.
+     *
+     * @param page the page.
+     * @param key the rendering parameters.
+     * @return the image size in pixels.
+     */
+    public static Dimension getImageSize(PDPage page, PageKey key) {
+        return getImageSize(page.getBBox(), key);
+    }
+
+    /**
+     * Get the size of the image which is needed to render the page.
+     *
+     * @param bBox the bounding box of the page.
+     * @param key the rendering parameters.
+     * @return the image size in pixels.
+     */
+    public static Dimension getImageSize(PDRectangle bBox, PageKey key) {
+        Rectangle2D pageRect = getPageRect(bBox, key);
+        if (key.getRotationDeg() != 0.0) {
+            AffineTransform rot = AffineTransform.getRotateInstance(Math.toRadians(key.getRotationDeg()));
+            Shape rotRect = rot.createTransformedShape(pageRect);
+            pageRect = rotRect.getBounds2D();
+        }
+        return new Dimension(Math.max((int) pageRect.getWidth(), 1), Math.max((int) pageRect.getHeight(), 1));
+    }
+
+    private static Rectangle2D getPageRect(PDRectangle bBox, PageKey key) {
+        return new Rectangle2D.Double(0.0, 0.0, bBox.getWidth() * key.getScale(), bBox.getHeight() * key.getScale());
+    }
+
+    /**
+     * Render a page into the given graphics context. The area of the page image is
+     * first cleared and then the page is rendered with the background of the key.
+     * The current transform and clip of the graphics context are respected, so this
+     * can also be used to render parts of a page.
+     *
+     * @param renderer the PDF renderer.
+     * @param page the page.
+     * @param key the rendering parameters.
+     * @param g2d the graphics context.
+     * @throws IOException if the page cannot be rendered.
+     */
+    public static void renderPage(PDFRenderer renderer, PDPage page, PageKey key, Graphics2D g2d) throws IOException {
+        Dimension size = getImageSize(page, key);
+        Graphics2D g2 = (Graphics2D) g2d.create();
+        try {
+            g2.setBackground(CLEAR_COLOR);
+            g2.clearRect(0, 0, size.width, size.height);
+            g2.setBackground(key.getAWTBackground());
+            g2.transform(getImageTransform(page, key));
+            renderer.renderPageToGraphics(key.getPageIndex(), g2, key.getScale());
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Render a page into a new image of type TYPE_INT_ARGB_PRE, so that it can be wrapped
+     * by an AWTImage without any copy.
+     *
+     * @param renderer the PDF renderer.
+     * @param page the page.
+     * @param key the rendering parameters.
+     * @return the rendered image.
+     * @throws IOException if the page cannot be rendered.
+     */
+    public static BufferedImage renderPage(PDFRenderer renderer, PDPage page, PageKey key) throws IOException {
+        Dimension size = getImageSize(page, key);
+        BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            renderPage(renderer, page, key, g2d);
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Render a quick low resolution preview of a page. The page is rendered with the given
+     * fraction of the scale of the key and with rendering hints which favour speed over quality.
+     * The renderer should allow subsampling of images to make this really fast.
+     *
+     * @param renderer the PDF renderer. Its rendering hints are restored afterwards.
+     * @param page the page.
+     * @param key the rendering parameters of the final page.
+     * @param previewFactor the fraction of the final scale, e.g., 0.25.
+     * @return the rendered preview image.
+     * @throws IOException if the page cannot be rendered.
+     */
+    public static BufferedImage renderPreview(PDFRenderer renderer, PDPage page, PageKey key, float previewFactor) throws IOException {
+        RenderingHints oldHints = renderer.getRenderingHints();
+        renderer.setRenderingHints(PREVIEW_HINTS);
+        try {
+            return renderPage(renderer, page, key.withScale(key.getScale() * previewFactor));
+        } finally {
+            renderer.setRenderingHints(oldHints);
+        }
+    }
+
+}
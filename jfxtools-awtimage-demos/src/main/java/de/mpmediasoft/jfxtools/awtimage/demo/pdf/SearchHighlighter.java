@@ -0,0 +1,120 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.awt.AlphaComposite;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.Raster;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import de.mpmediasoft.jfxtools.awtimage.AWTImage;
+
+/**
+ * Highlights search hits by drawing directly into the AWTImage of a rendered page.
+ * Only the region around the hits is changed and uploaded to JavaFX via a partial
+ * update. The original pixels of that region are saved before, so that the highlights
+ * can be removed again without rendering the page once more. So a page image which
+ * is shared with a cache is left unchanged after clear() has been called.
+ *
+ * All methods must be called on the JavaFX application thread.
+ *
+ * @author Michael Paus
+ */
+public class SearchHighlighter {
+
+    private final static java.awt.Color DEFAULT_COLOR = new java.awt.Color(255, 200, 0, 96);
+    private final static java.awt.Color DEFAULT_CURRENT_COLOR = new java.awt.Color(255, 100, 0, 128);
+    private final static int PADDING = 2;
+
+    private final java.awt.Color color;
+    private final java.awt.Color currentColor;
+
+    private AWTImage image;
+    private Raster savedPixels;
+
+    /**
+     * Create a new highlighter with the default colors.
+     */
+    public SearchHighlighter() {
+        this(DEFAULT_COLOR, DEFAULT_CURRENT_COLOR);
+    }
+
+    /**
+     * Create a new highlighter.
+     *
+     * @param color the translucent color of the hits.
+     * @param currentColor the translucent color of the current hit.
+     */
+    public SearchHighlighter(java.awt.Color color, java.awt.Color currentColor) {
+        this.color = color;
+        this.currentColor = currentColor;
+    }
+
+    /**
+     * Highlight the hits on a rendered page. Previous highlights are cleared before.
+     *
+     * @param image the image of the rendered page.
+     * @param pageSize the size of the page as returned by PDFTextIndex.getPageSize().
+     * @param key the key with which the page has been rendered.
+     * @param hits the hits on this page.
+     * @param currentHit the hit which is highlighted with the current color or null.
+     */
+    public void highlight(AWTImage image, PDRectangle pageSize, PageKey key, List<PDFTextIndex.Hit> hits, PDFTextIndex.Hit currentHit) {
+        clear();
+        if (hits.isEmpty()) return;
+
+        // Page coordinates in points -> scaled page coordinates -> image coordinates.
+        AffineTransform toImage = PageRendering.getImageTransform(pageSize, key);
+        toImage.scale(key.getScale(), key.getScale());
+
+        List<Rectangle> hitRects = new ArrayList<>();
+        List<Rectangle> currentRects = new ArrayList<>();
+        Rectangle dirty = null;
+        for (PDFTextIndex.Hit hit : hits) {
+            for (Rectangle2D box : hit.getBoxes()) {
+                Rectangle r = toImage.createTransformedShape(box).getBounds();
+                r.grow(PADDING, PADDING);
+                (hit == currentHit ? currentRects : hitRects).add(r);
+                dirty = (dirty == null) ? new Rectangle(r) : dirty.union(r);
+            }
+        }
+        final Rectangle region = dirty.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        if (region.isEmpty()) return;
+
+        this.image = image;
+        this.savedPixels = image.getAWTImage().getData(region);
+        image.update(g2d -> {
+            java.awt.Graphics2D g2 = (java.awt.Graphics2D) g2d.create();
+            try {
+                g2.setComposite(AlphaComposite.SrcOver);
+                g2.setColor(color);
+                for (Rectangle r : hitRects) g2.fill(r);
+                g2.setColor(currentColor);
+                for (Rectangle r : currentRects) g2.fill(r);
+            } finally {
+                g2.dispose();
+            }
+            return region;
+        });
+    }
+
+    /**
+     * Remove the highlights by restoring the saved pixels of the highlighted region.
+     */
+    public void clear() {
+        if (image != null) {
+            final AWTImage target = image;
+            final Raster pixels = savedPixels;
+            target.update(g2d -> {
+                target.getAWTImage().setData(pixels);
+                return new Rectangle(pixels.getMinX(), pixels.getMinY(), pixels.getWidth(), pixels.getHeight());
+            });
+            image = null;
+            savedPixels = null;
+        }
+    }
+
+}
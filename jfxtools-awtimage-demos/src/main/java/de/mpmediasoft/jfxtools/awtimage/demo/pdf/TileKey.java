@@ -0,0 +1,74 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+/**
+ * An immutable key which identifies a square tile of a rendered PDF page.
+ *
+ * @author Michael Paus
+ */
+public final class TileKey {
+
+    private final PageKey pageKey;
+    private final int tileSize;
+    private final int column;
+    private final int row;
+
+    /**
+     * Create a new key.
+     *
+     * @param pageKey the key of the rendered page.
+     * @param tileSize the width and height of the tiles.
+     * @param column the column of the tile.
+     * @param row the row of the tile.
+     */
+    public TileKey(PageKey pageKey, int tileSize, int column, int row) {
+        this.pageKey = pageKey;
+        this.tileSize = tileSize;
+        this.column = column;
+        this.row = row;
+    }
+
+    public PageKey getPageKey() {return pageKey;}
+
+    public int getTileSize() {return tileSize;}
+
+    public int getColumn() {return column;}
+
+    public int getRow() {return row;}
+
+    /**
+     * Get the x-coordinate of the tile in page image coordinates.
+     *
+     * @return the x-coordinate in pixels.
+     */
+    public int getX() {return column * tileSize;}
+
+    /**
+     * Get the y-coordinate of the tile in page image coordinates.
+     *
+     * @return the y-coordinate in pixels.
+     */
+    public int getY() {return row * tileSize;}
+
+    @Override
+    public int hashCode() {
+        int result = pageKey.hashCode();
+        result = 31 * result + tileSize;
+        result = 31 * result + column;
+        result = 31 * result + row;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (! (obj instanceof TileKey)) return false;
+        TileKey other = (TileKey) obj;
+        return tileSize == other.tileSize && column == other.column && row == other.row && pageKey.equals(other.pageKey);
+    }
+
+    @Override
+    public String toString() {
+        return "TileKey[" + pageKey + ", size=" + tileSize + ", column=" + column + ", row=" + row + "]";
+    }
+
+}
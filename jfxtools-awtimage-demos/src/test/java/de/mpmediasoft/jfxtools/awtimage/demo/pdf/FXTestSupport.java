@@ -0,0 +1,50 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javafx.application.Platform;
+
+/**
+ * Runs test code on the JavaFX application thread, e.g., code which creates an AWTImage.
+ *
+ * @author Michael Paus
+ */
+final class FXTestSupport {
+
+    private FXTestSupport() {}
+
+    /**
+     * Start the JavaFX toolkit if it is not running yet.
+     */
+    static void startToolkit() {
+        try {
+            Platform.startup(() -> {});
+            Platform.setImplicitExit(false);
+        } catch (IllegalStateException e) {
+            // Already running.
+        }
+    }
+
+    /**
+     * Run the given code on the JavaFX application thread and wait for its result.
+     *
+     * @param <T> the type of the result.
+     * @param callable the code to run.
+     * @return the result of the code.
+     * @throws Exception if the code fails or does not finish in time.
+     */
+    static <T> T runOnFxThread(Callable<T> callable) throws Exception {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+}
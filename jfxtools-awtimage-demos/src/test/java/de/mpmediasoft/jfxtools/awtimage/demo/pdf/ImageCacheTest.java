@@ -0,0 +1,137 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import de.mpmediasoft.jfxtools.awtimage.AWTImage;
+
+/**
+ * Checks the eviction order of the ImageCache.
+ *
+ * @author Michael Paus
+ */
+public class ImageCacheTest {
+
+    // The size of a 10 x 10 image in bytes.
+    private final static long IMAGE_BYTES = 400;
+
+    @BeforeAll
+    public static void startToolkit() {
+        FXTestSupport.startToolkit();
+    }
+
+    private static AWTImage createImage() throws Exception {
+        return FXTestSupport.runOnFxThread(() -> new AWTImage(10, 10));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedFirst() throws Exception {
+        ImageCache<String> cache = new ImageCache<>(3 * IMAGE_BYTES);
+        cache.put("a", createImage());
+        cache.put("b", createImage());
+        cache.put("c", createImage());
+        cache.get("a");
+        cache.put("d", createImage());
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertTrue(cache.contains("d"));
+        assertEquals(3 * IMAGE_BYTES, cache.getUsedBytes());
+
+        cache.put("e", createImage());
+        assertFalse(cache.contains("c"));
+        assertTrue(cache.contains("a"));
+    }
+
+    @Test
+    public void containsDoesNotChangeTheOrder() throws Exception {
+        ImageCache<String> cache = new ImageCache<>(2 * IMAGE_BYTES);
+        cache.put("a", createImage());
+        cache.put("b", createImage());
+        assertTrue(cache.contains("a"));
+        cache.put("c", createImage());
+
+        assertFalse(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+    }
+
+    @Test
+    public void replacingAnImageKeepsTheSize() throws Exception {
+        ImageCache<String> cache = new ImageCache<>(2 * IMAGE_BYTES);
+        cache.put("a", createImage());
+        cache.put("b", createImage());
+        cache.put("a", createImage());
+
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertEquals(2 * IMAGE_BYTES, cache.getUsedBytes());
+    }
+
+    @Test
+    public void neverEvictsTheImageJustAdded() throws Exception {
+        ImageCache<String> cache = new ImageCache<>(IMAGE_BYTES / 2);
+        cache.put("a", createImage());
+        assertTrue(cache.contains("a"));
+
+        cache.put("b", createImage());
+        assertFalse(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+    }
+
+    @Test
+    public void neverEvictsPinnedImages() throws Exception {
+        ImageCache<String> cache = new ImageCache<>(3 * IMAGE_BYTES);
+        cache.put("a", createImage());
+        cache.put("b", createImage());
+        cache.put("c", createImage());
+        cache.pin(Arrays.asList("a", "b"));
+        cache.put("d", createImage());
+
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertFalse(cache.contains("c"));
+        assertTrue(cache.contains("d"));
+    }
+
+    @Test
+    public void pinnedImagesMayExceedTheLimit() throws Exception {
+        ImageCache<String> cache = new ImageCache<>(2 * IMAGE_BYTES);
+        cache.pin(Arrays.asList("a", "b", "c"));
+        cache.put("a", createImage());
+        cache.put("b", createImage());
+        cache.put("c", createImage());
+
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals(3 * IMAGE_BYTES, cache.getUsedBytes());
+
+        // Unpinning evicts the least recently used images until the limit is met again.
+        cache.pin(Collections.singletonList("a"));
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals(2 * IMAGE_BYTES, cache.getUsedBytes());
+    }
+
+    @Test
+    public void clearRemovesEverything() throws Exception {
+        ImageCache<String> cache = new ImageCache<>(2 * IMAGE_BYTES);
+        cache.pin(Collections.singletonList("a"));
+        cache.put("a", createImage());
+        cache.clear();
+
+        assertFalse(cache.contains("a"));
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+}
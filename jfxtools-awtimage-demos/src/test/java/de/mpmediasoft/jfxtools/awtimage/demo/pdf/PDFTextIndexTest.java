@@ -0,0 +1,130 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the phrase search of the PDFTextIndex on a generated document.
+ *
+ * @author Michael Paus
+ */
+public class PDFTextIndexTest {
+
+    // The lines of text of each page.
+    private final static String[][] PAGES = {
+        {"The quick brown fox"},
+        {"A brown fox jumps.", "Quick, brown fox!"}
+    };
+
+    @TempDir
+    File directory;
+
+    private File createDocument() throws IOException {
+        File pdfFile = new File(directory, "test.pdf");
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (String[] lines : PAGES) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 12);
+                    content.newLineAtOffset(72, 700);
+                    for (String line : lines) {
+                        content.showText(line);
+                        content.newLineAtOffset(0, -20);
+                    }
+                    content.endText();
+                }
+            }
+            document.save(pdfFile);
+        }
+        return pdfFile;
+    }
+
+    private PDFTextIndex buildIndex(File indexFile) throws Exception {
+        PDFRendererPool pool = new PDFRendererPool(createDocument(), 2);
+        try {
+            PDFTextIndex index = new PDFTextIndex(PAGES.length);
+            return index.buildAsync(pool, indexFile).get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.dispose();
+        }
+    }
+
+    // Each hit as "pageIndex:position".
+    private static List<String> positions(List<PDFTextIndex.Hit> hits) {
+        List<String> positions = new ArrayList<>();
+        for (PDFTextIndex.Hit hit : hits) positions.add(hit.getPageIndex() + ":" + hit.getPosition());
+        return positions;
+    }
+
+    @Test
+    public void findsPhrasesOnAllPages() throws Exception {
+        PDFTextIndex index = buildIndex(null);
+        assertTrue(index.isComplete());
+        assertEquals(List.of("0:2", "1:1", "1:5"), positions(index.search("brown fox")));
+    }
+
+    @Test
+    public void ignoresCaseAndPunctuation() throws Exception {
+        PDFTextIndex index = buildIndex(null);
+        assertEquals(List.of("0:1", "1:4"), positions(index.search("QUICK, Brown")));
+        assertEquals(List.of("1:3"), positions(index.search("  jumps! ")));
+    }
+
+    @Test
+    public void requiresAdjacentWords() throws Exception {
+        PDFTextIndex index = buildIndex(null);
+        assertEquals(List.of(), positions(index.search("quick fox")));
+        assertEquals(List.of(), positions(index.search("fox brown")));
+        assertEquals(List.of(), positions(index.search("elephant")));
+        assertEquals(List.of(), positions(index.search(" ,. ")));
+    }
+
+    @Test
+    public void returnsOneBoxPerWordOnThePage() throws Exception {
+        PDFTextIndex index = buildIndex(null);
+        List<PDFTextIndex.Hit> hits = index.search("the quick brown");
+        assertEquals(1, hits.size());
+        PDRectangle pageSize = index.getPageSize(0);
+        assertNotNull(pageSize);
+        Rectangle2D page = new Rectangle2D.Float(0, 0, pageSize.getWidth(), pageSize.getHeight());
+        List<Rectangle2D> boxes = hits.get(0).getBoxes();
+        assertEquals(3, boxes.size());
+        for (int i = 0; i < boxes.size(); i++) {
+            assertTrue(page.contains(boxes.get(i)), "Box " + boxes.get(i) + " is outside of the page.");
+            if (i > 0) assertTrue(boxes.get(i - 1).getMaxX() <= boxes.get(i).getMinX(), "The words are not in reading order.");
+        }
+    }
+
+    @Test
+    public void savedIndexFindsTheSameHits() throws Exception {
+        File indexFile = new File(directory, "test.idx");
+        PDFTextIndex built = buildIndex(indexFile);
+        assertTrue(indexFile.isFile());
+
+        PDFTextIndex loaded = buildIndex(indexFile);
+        assertTrue(loaded.isComplete());
+        assertEquals(positions(built.search("brown fox")), positions(loaded.search("brown fox")));
+        assertEquals(built.search("quick").get(1).getBoxes(), loaded.search("quick").get(1).getBoxes());
+    }
+
+}
@@ -0,0 +1,141 @@
+package de.mpmediasoft.jfxtools.awtimage.demo.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.mpmediasoft.jfxtools.awtimage.AWTImage;
+
+/**
+ * Checks that rendered pages survive a round trip through the PageDiskCache.
+ *
+ * @author Michael Paus
+ */
+public class PageDiskCacheTest {
+
+    private final static String HASH = "0123456789abcdef";
+    private final static PageKey KEY = new PageKey(3, 1.5f, 0.0, 0xffffffff);
+
+    @TempDir
+    File directory;
+
+    @BeforeAll
+    public static void startToolkit() {
+        FXTestSupport.startToolkit();
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return (int[]) image.getRaster().getDataElements(0, 0, image.getWidth(), image.getHeight(), null);
+    }
+
+    private static int[] load(PageDiskCache cache, PageKey key) throws Exception {
+        PageDiskCache.CachedPage page = cache.load(HASH, key);
+        if (page == null) return null;
+        return FXTestSupport.runOnFxThread(() -> {
+            AWTImage image = page.toAWTImage();
+            assertEquals(page.getWidth(), image.getWidth());
+            assertEquals(page.getHeight(), image.getHeight());
+            return pixels(image.getAWTImage());
+        });
+    }
+
+    private File entryFile() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".argb"));
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        BufferedImage image = createImage(123, 45);
+        PageDiskCache cache = new PageDiskCache(directory, 1024 * 1024);
+        cache.store(HASH, KEY, image);
+
+        PageDiskCache.CachedPage page = cache.load(HASH, KEY);
+        assertNotNull(page);
+        assertEquals(123, page.getWidth());
+        assertEquals(45, page.getHeight());
+        assertArrayEquals(pixels(image), load(cache, KEY));
+    }
+
+    @Test
+    public void survivesANewCacheInstance() throws Exception {
+        BufferedImage image = createImage(64, 32);
+        new PageDiskCache(directory, 1024 * 1024).store(HASH, KEY, image);
+
+        assertArrayEquals(pixels(image), load(new PageDiskCache(directory, 1024 * 1024), KEY));
+    }
+
+    @Test
+    public void distinguishesKeys() throws Exception {
+        PageDiskCache cache = new PageDiskCache(directory, 1024 * 1024);
+        cache.store(HASH, KEY, createImage(16, 16));
+
+        assertNull(cache.load(HASH, KEY.withScale(2.0f)));
+        assertNull(cache.load(HASH, KEY.withPageIndex(4)));
+        assertNull(cache.load("fedcba9876543210", KEY));
+    }
+
+    @Test
+    public void ignoresTruncatedEntries() throws Exception {
+        PageDiskCache cache = new PageDiskCache(directory, 1024 * 1024);
+        cache.store(HASH, KEY, createImage(16, 16));
+        try (RandomAccessFile file = new RandomAccessFile(entryFile(), "rw")) {
+            file.setLength(file.length() - 4);
+        }
+
+        assertNull(cache.load(HASH, KEY));
+    }
+
+    @Test
+    public void renderingIntoALoadedPageDoesNotChangeTheEntry() throws Exception {
+        BufferedImage image = createImage(32, 32);
+        PageDiskCache cache = new PageDiskCache(directory, 1024 * 1024);
+        cache.store(HASH, KEY, image);
+
+        PageDiskCache.CachedPage page = cache.load(HASH, KEY);
+        FXTestSupport.runOnFxThread(() -> {
+            page.toAWTImage().update(g2d -> {
+                g2d.setColor(Color.RED);
+                g2d.fillRect(0, 0, 32, 32);
+                return null;
+            });
+            return null;
+        });
+
+        assertArrayEquals(pixels(image), load(cache, KEY));
+    }
+
+    @Test
+    public void doesNotStoreEntriesLargerThanTheCache() throws IOException {
+        PageDiskCache cache = new PageDiskCache(directory, 1024);
+        cache.store(HASH, KEY, createImage(32, 32));
+
+        assertNull(cache.load(HASH, KEY));
+    }
+
+}
@@ -1,11 +1,27 @@
 package de.mpmediasoft.jfxtools.awtimage;
 
 import java.awt.Graphics2D;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.image.Image;
 import javafx.scene.image.PixelBuffer;
@@ -24,11 +40,20 @@ import javafx.util.Callback;
  */
 public class AWTImage {
 	
+	// The JavaFX image may still be uploaded during the current pulse after its last update,
+	// so off-heap memory is only released after this number of pulses.
+	private final static int RELEASE_PULSES = 2;
+	
 	private BufferedImage awtImage;
 	private Graphics2D g2d;
+	private DirtyRegionGraphics2D trackingG2d;
+	private boolean dirtyRegionTracking = true;
+	private IntBuffer pixels;
 	private PixelBuffer<IntBuffer> pixelBuffer;
 	private WritableImage fxImage;
 	private Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> registeredUpdateCallback;
+	private boolean disposed = false;
+	private final List<ImageExporter.Export> runningExports = new CopyOnWriteArrayList<>();
 
 	/**
 	 * Constructs an internal BufferedImage with the given width and height.
@@ -41,30 +66,191 @@ public class AWTImage {
 	}
 	
 	/**
-	 * Wraps an already existing BufferedImage. (Must be of type TYPE_INT_ARGB_PRE).
+	 * Constructs an internal BufferedImage with the given width and height whose pixels
+	 * optionally live in off-heap memory. This keeps large images out of the Java heap
+	 * and the memory is released deterministically when dispose() is called. But Java2D has
+	 * to use its generic (slower) rendering loops for such an image.
+	 * 
+	 * @param width image width
+	 * @param height image height
+	 * @param offHeap true if the pixels shall be stored in off-heap memory.
+	 */
+	public AWTImage(int width, int height, boolean offHeap) {
+		this(offHeap ? createOffHeapImage(width, height) : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE));
+	}
+	
+	/**
+	 * Wraps an already existing direct buffer, e.g., a memory-mapped file, without any copy.
+	 * The remaining bytes of the buffer must contain at least width * height premultiplied
+	 * ARGB pixels as integers in native byte order. The buffer is not released by dispose().
+	 * Map a file with MapMode.PRIVATE (from a channel opened for reading and writing)
+	 * if you want to render into the image without changing the file.
+	 * 
+	 * @param pixelData the buffer holding the pixels.
+	 * @param width image width
+	 * @param height image height
+	 */
+	public AWTImage(ByteBuffer pixelData, int width, int height) {
+		this(createImage(new DirectDataBufferInt(pixelData, Math.multiplyExact(width, height)), width, height));
+	}
+	
+	/**
+	 * Wraps an already existing BufferedImage. If it is of type TYPE_INT_ARGB_PRE (and is not
+	 * a sub-image), its memory is directly shared with the JavaFX image without any copy.
+	 * Images of any other type, e.g., TYPE_INT_RGB, TYPE_3BYTE_BGR or TYPE_4BYTE_ABGR as
+	 * typically returned by ImageIO, are converted once into an internal TYPE_INT_ARGB_PRE
+	 * image. In that case later changes of the original image are not visible and you have
+	 * to render into the image returned by getAWTImage().
 	 * 
 	 * @param awtImage the image to be wrapped.
 	 */
 	public AWTImage(BufferedImage awtImage) {
+		setAWTImage(PixelConverter.isWrappable(awtImage) ? awtImage : PixelConverter.convert(awtImage));
+	}
+	
+	private void setAWTImage(BufferedImage awtImage) {
+		if (g2d != null) {
+			g2d.dispose();
+		}
+		
 		this.awtImage = awtImage;
 		g2d = (Graphics2D) awtImage.getGraphics();
+		trackingG2d = new DirtyRegionGraphics2D(g2d);
 
 		DataBuffer db = awtImage.getRaster().getDataBuffer();
-		DataBufferInt dbi = (DataBufferInt) db;
-		int[] rawInts = dbi.getData();
-		IntBuffer ib = IntBuffer.wrap(rawInts);
-		assert rawInts.length == awtImage.getWidth() * awtImage.getHeight();
+		if (db instanceof DirectDataBufferInt) {
+			pixels = ((DirectDataBufferInt) db).getIntBuffer();
+		} else {
+			DataBufferInt dbi = (DataBufferInt) db;
+			int[] rawInts = dbi.getData();
+			pixels = IntBuffer.wrap(rawInts);
+		}
+		assert pixels.capacity() >= awtImage.getWidth() * awtImage.getHeight();
 
 		PixelFormat<IntBuffer> pixelFormat = PixelFormat.getIntArgbPreInstance();
-		pixelBuffer = new PixelBuffer<>(awtImage.getWidth(), awtImage.getHeight(), ib, pixelFormat);
+		pixelBuffer = new PixelBuffer<>(awtImage.getWidth(), awtImage.getHeight(), pixels, pixelFormat);
 		fxImage = new WritableImage(pixelBuffer);
 		pixelBuffer.updateBuffer(pb -> null);
 	}
 	
+	private static BufferedImage createOffHeapImage(int width, int height) {
+		return createImage(new DirectDataBufferInt(Math.multiplyExact(width, height)), width, height);
+	}
+	
+	// Creates a TYPE_INT_ARGB_PRE compatible image using the first width * height elements of the given data buffer.
+	private static BufferedImage createImage(DataBuffer db, int width, int height) {
+		int[] masks = {0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000};
+		WritableRaster raster = Raster.createWritableRaster(new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, masks), db, null);
+		ColorModel colorModel = new DirectColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), 32, masks[0], masks[1], masks[2], masks[3], true, DataBuffer.TYPE_INT);
+		return new BufferedImage(colorModel, raster, true, null);
+	}
+	
+	/**
+	 * Get the number of pixels which fit into the memory currently allocated for this image.
+	 * Initially this is just width * height, see resize().
+	 * 
+	 * @return the pixel capacity.
+	 */
+	public int getCapacity() {
+		checkNotDisposed();
+		return pixels.capacity();
+	}
+	
+	/**
+	 * Resize the image. As long as the new image fits into the already allocated memory
+	 * (see getCapacity()), this memory is reused and only some light-weight wrapper objects
+	 * are recreated. Otherwise new memory is allocated with 25% extra capacity for further
+	 * growth. The memory of a wrapped external BufferedImage is reused as well.
+	 * 
+	 * Note that the constructors allocate exactly width * height pixels, so that images
+	 * which are never resized do not waste any memory. Therefore the first growth of an
+	 * image always reallocates. Construct the image with the largest expected size and
+	 * shrink it via resize() if you want to avoid that.
+	 * 
+	 * The content of the image is undefined after a resize and has to be updated. As the
+	 * JavaFX image changes with a resize, getFXImage() has to be called again afterwards.
+	 * Must be called on the JavaFX application thread if the image is currently displayed.
+	 * 
+	 * @param width the new image width
+	 * @param height the new image height
+	 */
+	public void resize(int width, int height) {
+		checkNotDisposed();
+		if (width == getWidth() && height == getHeight()) return;
+		preserveRunningExports();
+		
+		final int size = Math.multiplyExact(width, height);
+		final DataBuffer oldDb = awtImage.getRaster().getDataBuffer();
+		final boolean offHeap = oldDb instanceof DirectDataBufferInt;
+		final DataBuffer db;
+		if (size <= pixels.capacity()) {
+			db = offHeap ? oldDb : new DataBufferInt(((DataBufferInt) oldDb).getData(), size);
+		} else {
+			final int capacity = (int) Math.min((long) size + size / 4, Integer.MAX_VALUE - 8);
+			if (offHeap) {
+				// The old memory may still be in use by the currently displayed JavaFX image,
+				// so it is left to the garbage collector.
+				db = new DirectDataBufferInt(capacity);
+			} else {
+				db = new DataBufferInt(new int[capacity], size);
+			}
+		}
+		setAWTImage(createImage(db, width, height));
+	}
+	
+	/**
+	 * Release all resources of this image. If the pixels are stored in off-heap memory,
+	 * this memory is released two pulses later when called on the JavaFX application thread
+	 * (because the last update may still be uploaded) and immediately otherwise. So the image
+	 * must not be displayed anymore, i.e., it has to be removed from all nodes before. The image
+	 * is detached from this instance, so getFXImage() returns null afterwards. Later updates
+	 * are ignored, and resize(), getCapacity() and exportAsync() throw an IllegalStateException.
+	 */
+	public void dispose() {
+		if (disposed) return;
+		disposed = true;
+		preserveRunningExports();
+		g2d.dispose();
+		fxImage = null;
+		pixelBuffer = null;
+		DataBuffer db = awtImage.getRaster().getDataBuffer();
+		if (db instanceof DirectDataBufferInt) {
+			releaseLater(((DirectDataBufferInt) db)::free);
+		}
+	}
+	
+	/**
+	 * Check whether this image has been disposed.
+	 * 
+	 * @return true if dispose() has been called.
+	 */
+	public boolean isDisposed() {return disposed;}
+	
+	private void checkNotDisposed() {
+		if (disposed) throw new IllegalStateException("The image has been disposed.");
+	}
+	
+	private static void releaseLater(Runnable release) {
+		if (Platform.isFxApplicationThread()) {
+			new AnimationTimer() {
+				private int pulses = RELEASE_PULSES;
+				@Override
+				public void handle(long now) {
+					if (--pulses <= 0) {
+						stop();
+						release.run();
+					}
+				}
+			}.start();
+		} else {
+			release.run();
+		}
+	}
+	
 	/**
 	 * Get access to the internal JavaFX image.
 	 * 
-	 * @return the internal JavaFX image.
+	 * @return the internal JavaFX image or null if this image has been disposed.
 	 */
 	public Image getFXImage() {return fxImage;}
 	
@@ -89,20 +275,176 @@ public class AWTImage {
 	 */
 	public int getHeight() {return awtImage.getHeight();}
 	
+	/**
+	 * Enable or disable the automatic dirty region tracking. (Enabled by default.)
+	 * If enabled, the update call-backs get a graphics context which records the
+	 * bounds of all rendering operations. If a call-back then returns null, only
+	 * the recorded region is updated. If nothing was recorded, e.g., because the
+	 * call-back rendered via some other graphics context, the whole image is updated
+	 * as before. A non-null rectangle returned by a call-back always takes precedence.
+	 * 
+	 * @param dirtyRegionTracking true to enable the automatic dirty region tracking.
+	 */
+	public void setDirtyRegionTracking(boolean dirtyRegionTracking) {
+		this.dirtyRegionTracking = dirtyRegionTracking;
+	}
+	
+	/**
+	 * Check whether the automatic dirty region tracking is enabled.
+	 * 
+	 * @return true if the automatic dirty region tracking is enabled.
+	 */
+	public boolean isDirtyRegionTracking() {return dirtyRegionTracking;}
+	
+	/**
+	 * Export the current content of the image asynchronously to an image file.
+	 * The pixels are read and encoded on a background thread without copying the
+	 * whole image. If the image is changed via this class before the export has
+	 * finished, the rows which have not been written yet are copied before. So the
+	 * export always shows the content at the time of this call, as long as the
+	 * internal AWT image is not changed directly. See ImageExporter for details.
+	 * 
+	 * @param formatName the ImageIO format name, e.g., "png" or "jpeg".
+	 * @param file the output file.
+	 * @return a future which is completed with the output file when the export has finished.
+	 */
+	public CompletableFuture<File> exportAsync(String formatName, File file) {
+		checkNotDisposed();
+		final ImageExporter.Export export = ImageExporter.startExport(pixels, getWidth(), getHeight(), formatName, file);
+		runningExports.add(export);
+		return export.getFuture().whenComplete((f, e) -> runningExports.remove(export));
+	}
+	
+	private void preserveRunningExports() {
+		for (ImageExporter.Export export : runningExports) {
+			export.preserve();
+		}
+	}
+	
 	/**
 	 * Update the image via a one-time-callback.
 	 * 
 	 * @param oneTimeUpdateCallback a one-time-callback.
 	 */
 	public void update(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> oneTimeUpdateCallback) {
-		if (oneTimeUpdateCallback != null) {
-			pixelBuffer.updateBuffer(pb -> {
-				final java.awt.geom.Rectangle2D r = oneTimeUpdateCallback.call(g2d);
-				return (r != null) ? (r.isEmpty() ? Rectangle2D.EMPTY : new Rectangle2D(r.getX(), r.getY(), r.getWidth(), r.getHeight())) : null;
-			});
+		if (oneTimeUpdateCallback != null && ! disposed) {
+			pixelBuffer.updateBuffer(pb -> render(oneTimeUpdateCallback));
 		}		
 	}
 	
+	// Can be called on any thread as long as the image is not visible or not updated concurrently.
+	Rectangle2D render(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> updateCallback) {
+		preserveRunningExports();
+		java.awt.geom.Rectangle2D r;
+		if (dirtyRegionTracking) {
+			trackingG2d.resetDirtyRegion();
+			r = updateCallback.call(trackingG2d);
+			if (r == null) {
+				final java.awt.geom.Rectangle2D tracked = trackingG2d.getDirtyRegion();
+				if (tracked != null) {
+					r = tracked.createIntersection(new java.awt.geom.Rectangle2D.Double(0, 0, awtImage.getWidth(), awtImage.getHeight()));
+				}
+			}
+		} else {
+			r = updateCallback.call(g2d);
+		}
+		return (r != null) ? (r.isEmpty() ? Rectangle2D.EMPTY : new Rectangle2D(r.getX(), r.getY(), r.getWidth(), r.getHeight())) : null;
+	}
+	
+	// Must be called on JavaFX application thread.
+	void upload(Rectangle2D dirtyRegion) {
+		if (disposed) return;
+		pixelBuffer.updateBuffer(pb -> dirtyRegion);
+	}
+	
+	/**
+	 * Update the image via a one-time-callback which is executed in parallel for a number
+	 * of horizontal stripes of the image, one stripe per available processor. The stripes
+	 * are rendered on the common fork-join pool.
+	 * 
+	 * @param oneTimeUpdateCallback a thread-safe one-time-callback.
+	 * @see #updateParallel(Callback, int, Executor)
+	 */
+	public void updateParallel(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> oneTimeUpdateCallback) {
+		updateParallel(oneTimeUpdateCallback, Runtime.getRuntime().availableProcessors(), ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Update the image via a one-time-callback which is executed in parallel for the given
+	 * number of horizontal stripes of the image. Each invocation gets its own graphics context
+	 * which is clipped to its stripe but still uses image coordinates. So the call-back just
+	 * renders the whole content as usual and Java2D discards everything outside of the stripe.
+	 * The call-back must be thread-safe and must not rely on any state of the graphics
+	 * context which was set by previous updates. The first stripe is rendered on the calling
+	 * thread and the image is updated once after all stripes have been rendered.
+	 * 
+	 * @param oneTimeUpdateCallback a thread-safe one-time-callback.
+	 * @param numStripes the number of stripes.
+	 * @param executor the executor used to render the stripes.
+	 */
+	public void updateParallel(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> oneTimeUpdateCallback, int numStripes, Executor executor) {
+		if (oneTimeUpdateCallback != null && ! disposed) {
+			pixelBuffer.updateBuffer(pb -> renderParallel(oneTimeUpdateCallback, numStripes, executor));
+		}
+	}
+	
+	private Rectangle2D renderParallel(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> updateCallback, int numStripes, Executor executor) {
+		preserveRunningExports();
+		final int width = awtImage.getWidth();
+		final int height = awtImage.getHeight();
+		final int stripeHeight = (height + Math.max(numStripes, 1) - 1) / Math.max(numStripes, 1);
+		final int stripeCount = (height + stripeHeight - 1) / stripeHeight;
+		
+		final List<CompletableFuture<java.awt.geom.Rectangle2D>> stripes = new ArrayList<>(stripeCount);
+		for (int i = 1; i < stripeCount; i++) {
+			final int y = i * stripeHeight;
+			final int h = Math.min(stripeHeight, height - y);
+			stripes.add(CompletableFuture.supplyAsync(() -> renderStripe(updateCallback, y, width, h), executor));
+		}
+		stripes.add(CompletableFuture.completedFuture(renderStripe(updateCallback, 0, width, Math.min(stripeHeight, height))));
+		
+		java.awt.geom.Rectangle2D union = null;
+		for (CompletableFuture<java.awt.geom.Rectangle2D> stripe : stripes) {
+			java.awt.geom.Rectangle2D r = stripe.join();
+			if (! r.isEmpty()) {
+				if (union == null) {
+					union = r;
+				} else {
+					union.add(r);
+				}
+			}
+		}
+		return (union != null) ? new Rectangle2D(union.getX(), union.getY(), union.getWidth(), union.getHeight()) : Rectangle2D.EMPTY;
+	}
+	
+	// Returns the dirty region of the stripe in image coordinates.
+	private java.awt.geom.Rectangle2D renderStripe(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> updateCallback, int y, int width, int height) {
+		final java.awt.geom.Rectangle2D stripeBounds = new java.awt.geom.Rectangle2D.Double(0, y, width, height);
+		final Graphics2D stripeG2d = awtImage.getSubimage(0, y, width, height).createGraphics();
+		stripeG2d.setRenderingHints(g2d.getRenderingHints());
+		stripeG2d.translate(0, -y);
+		stripeG2d.clip(stripeBounds);
+		
+		java.awt.geom.Rectangle2D r;
+		try {
+			if (dirtyRegionTracking) {
+				DirtyRegionGraphics2D stripeTrackingG2d = new DirtyRegionGraphics2D(stripeG2d);
+				r = updateCallback.call(stripeTrackingG2d);
+				if (r == null) {
+					final java.awt.geom.Rectangle2D tracked = stripeTrackingG2d.getDirtyRegion();
+					if (tracked != null) {
+						r = new java.awt.geom.Rectangle2D.Double(tracked.getX(), tracked.getY() + y, tracked.getWidth(), tracked.getHeight());
+					}
+				}
+			} else {
+				r = updateCallback.call(stripeG2d);
+			}
+		} finally {
+			stripeG2d.dispose();
+		}
+		return (r != null) ? r.createIntersection(stripeBounds) : stripeBounds;
+	}
+	
 	/**
 	 * Register a call-back which is used every time the update() function is called.
 	 * 
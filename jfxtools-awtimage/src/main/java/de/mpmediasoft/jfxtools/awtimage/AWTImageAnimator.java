@@ -0,0 +1,157 @@
+package de.mpmediasoft.jfxtools.awtimage;
+
+import java.util.concurrent.CompletableFuture;
+
+import javafx.animation.AnimationTimer;
+import javafx.util.Callback;
+
+/**
+ * A continuous update mode for an AWTImage or DoubleBufferedAWTImage which is driven
+ * by an AnimationTimer. The registered call-back is invoked at most once per JavaFX
+ * pulse and optionally not more often than a given target frame rate.
+ *
+ * For a DoubleBufferedAWTImage a new frame is only started if the rendering of the
+ * previous frame has finished. Otherwise the frame is skipped. The number of rendered
+ * and skipped frames is counted, so that you can check whether your rendering keeps up.
+ *
+ * All methods must be called on the JavaFX application thread.
+ *
+ * @author Michael Paus
+ */
+public class AWTImageAnimator {
+
+	private final AWTImage image;
+	private final DoubleBufferedAWTImage doubleBufferedImage;
+	private final Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> frameCallback;
+	private final AnimationTimer timer;
+
+	private long frameIntervalNanos = 0;
+	private long nextFrameTime = Long.MIN_VALUE;
+	private boolean running = false;
+	private CompletableFuture<Void> pendingFrame;
+
+	private long renderedFrames = 0;
+	private long skippedFrames = 0;
+
+	/**
+	 * Creates an animator which synchronously updates the given image on every frame.
+	 *
+	 * @param image the image to be updated.
+	 * @param frameCallback the call-back which renders a frame.
+	 */
+	public AWTImageAnimator(AWTImage image, Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> frameCallback) {
+		this(image, null, frameCallback);
+	}
+
+	/**
+	 * Creates an animator which updates the given image in the background on every frame.
+	 *
+	 * @param image the image to be updated.
+	 * @param frameCallback the call-back which renders a frame. It is called on a background thread.
+	 */
+	public AWTImageAnimator(DoubleBufferedAWTImage image, Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> frameCallback) {
+		this(null, image, frameCallback);
+	}
+
+	private AWTImageAnimator(AWTImage image, DoubleBufferedAWTImage doubleBufferedImage, Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> frameCallback) {
+		this.image = image;
+		this.doubleBufferedImage = doubleBufferedImage;
+		this.frameCallback = frameCallback;
+		this.timer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				onPulse(now);
+			}
+		};
+	}
+
+	/**
+	 * Set the target frame rate. (Default: 0)
+	 *
+	 * @param framesPerSecond the target frame rate or a value &lt;= 0 to render on every pulse.
+	 */
+	public void setTargetFrameRate(double framesPerSecond) {
+		frameIntervalNanos = (framesPerSecond > 0.0) ? (long) (1_000_000_000L / framesPerSecond) : 0;
+		nextFrameTime = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Get the target frame rate.
+	 *
+	 * @return the target frame rate or 0 if a frame is rendered on every pulse.
+	 */
+	public double getTargetFrameRate() {
+		return (frameIntervalNanos > 0) ? 1_000_000_000.0 / frameIntervalNanos : 0.0;
+	}
+
+	/**
+	 * Start the continuous updates.
+	 */
+	public void start() {
+		if (! running) {
+			running = true;
+			nextFrameTime = Long.MIN_VALUE;
+			timer.start();
+		}
+	}
+
+	/**
+	 * Stop the continuous updates. A frame which is currently rendered in the background is still displayed.
+	 */
+	public void stop() {
+		if (running) {
+			running = false;
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Check whether the continuous updates are running.
+	 *
+	 * @return true if the continuous updates are running.
+	 */
+	public boolean isRunning() {return running;}
+
+	/**
+	 * Get the number of frames which have been rendered and displayed.
+	 *
+	 * @return the number of rendered frames.
+	 */
+	public long getRenderedFrames() {return renderedFrames;}
+
+	/**
+	 * Get the number of frames which have been skipped because the previous frame was not finished yet.
+	 *
+	 * @return the number of skipped frames.
+	 */
+	public long getSkippedFrames() {return skippedFrames;}
+
+	/**
+	 * Reset the frame counters.
+	 */
+	public void resetCounters() {
+		renderedFrames = 0;
+		skippedFrames = 0;
+	}
+
+	private void onPulse(long now) {
+		if (frameIntervalNanos > 0) {
+			if (nextFrameTime != Long.MIN_VALUE && now < nextFrameTime) return;
+			// Keep a steady cadence but do not try to catch up after a longer pause.
+			nextFrameTime = (nextFrameTime == Long.MIN_VALUE || now - nextFrameTime > frameIntervalNanos) ? now + frameIntervalNanos : nextFrameTime + frameIntervalNanos;
+		}
+
+		if (doubleBufferedImage != null) {
+			if (pendingFrame != null && ! pendingFrame.isDone()) {
+				++skippedFrames;
+				return;
+			}
+			pendingFrame = doubleBufferedImage.update(frameCallback);
+			pendingFrame.thenRun(() -> ++renderedFrames);
+		} else {
+			image.update(frameCallback);
+			++renderedFrames;
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package de.mpmediasoft.jfxtools.awtimage;
+
+import java.awt.image.DataBuffer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * An integer DataBuffer whose data lives in a direct (off-heap) buffer instead
+ * of a Java int array. The memory can be released deterministically via free().
+ *
+ * Note: Java2D cannot use its optimized rendering loops for such a DataBuffer
+ * and falls back to its generic (slower) pixel access.
+ *
+ * @author Michael Paus
+ */
+class DirectDataBufferInt extends DataBuffer {
+
+	private static volatile boolean fallbackReported = false;
+
+	private ByteBuffer byteBuffer;
+	private IntBuffer intBuffer;
+	private final boolean owned;
+
+	DirectDataBufferInt(int size) {
+		super(TYPE_INT, size);
+		byteBuffer = ByteBuffer.allocateDirect(Math.multiplyExact(size, 4)).order(ByteOrder.nativeOrder());
+		intBuffer = byteBuffer.asIntBuffer();
+		owned = true;
+	}
+
+	// Wraps an external buffer, e.g., a memory-mapped file, which is not released by free().
+	DirectDataBufferInt(ByteBuffer buffer, int size) {
+		super(TYPE_INT, size);
+		if (! buffer.isDirect()) {
+			throw new IllegalArgumentException("Buffer is not direct.");
+		}
+		if (buffer.remaining() < Math.multiplyExact(size, 4)) {
+			throw new IllegalArgumentException("Buffer too small: " + buffer.remaining() + " < " + 4L * size);
+		}
+		byteBuffer = buffer.slice().order(ByteOrder.nativeOrder());
+		intBuffer = byteBuffer.asIntBuffer();
+		owned = false;
+	}
+
+	IntBuffer getIntBuffer() {return intBuffer;}
+
+	@Override
+	public int getElem(int bank, int i) {
+		return intBuffer.get(i + offsets[bank]);
+	}
+
+	@Override
+	public void setElem(int bank, int i, int val) {
+		intBuffer.put(i + offsets[bank], val);
+	}
+
+	/**
+	 * Release the off-heap memory immediately. The buffer must not be accessed anymore afterwards.
+	 * If this is not possible on the current platform, the memory is released by the garbage collector,
+	 * which is reported once on System.err.
+	 * An external buffer is never released here.
+	 */
+	void free() {
+		if (byteBuffer != null) {
+			ByteBuffer buffer = byteBuffer;
+			byteBuffer = null;
+			intBuffer = null;
+			if (owned) freeDirectBuffer(buffer);
+		}
+	}
+
+	private static void freeDirectBuffer(ByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+		} catch (Exception e) {
+			// Leave it to the garbage collector.
+			if (! fallbackReported) {
+				fallbackReported = true;
+				System.err.println("DirectDataBufferInt: Cannot release off-heap memory immediately, it is left to the garbage collector. (" + e + ")");
+			}
+		}
+	}
+
+}
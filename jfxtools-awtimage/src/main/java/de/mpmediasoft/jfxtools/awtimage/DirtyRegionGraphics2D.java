@@ -0,0 +1,586 @@
+package de.mpmediasoft.jfxtools.awtimage;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.RenderingHints.Key;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.Map;
+
+/**
+ * A Graphics2D wrapper which forwards all calls to the wrapped graphics context
+ * and accumulates the device space bounds of all rendering operations. The current
+ * transform, stroke and clip are taken into account. The resulting dirty region is
+ * conservative, i.e., it may be a bit larger than the area which was actually touched.
+ *
+ * All graphics contexts derived from this one via create() report into the same dirty region.
+ *
+ * @author Michael Paus
+ */
+public class DirtyRegionGraphics2D extends Graphics2D {
+
+	// Extra padding in device space to account for anti-aliasing and pixel rounding.
+	private final static double DEVICE_PADDING = 1.0;
+
+	private final static class DirtyRegion {
+		double minX, minY, maxX, maxY;
+		boolean empty = true;
+
+		void add(double x1, double y1, double x2, double y2) {
+			if (empty) {
+				minX = x1; minY = y1; maxX = x2; maxY = y2;
+				empty = false;
+			} else {
+				minX = Math.min(minX, x1);
+				minY = Math.min(minY, y1);
+				maxX = Math.max(maxX, x2);
+				maxY = Math.max(maxY, y2);
+			}
+		}
+	}
+
+	private final Graphics2D g2d;
+	private final DirtyRegion dirtyRegion;
+
+	/**
+	 * Wraps the given graphics context.
+	 *
+	 * @param g2d the graphics context to be wrapped.
+	 */
+	public DirtyRegionGraphics2D(Graphics2D g2d) {
+		this(g2d, new DirtyRegion());
+	}
+
+	private DirtyRegionGraphics2D(Graphics2D g2d, DirtyRegion dirtyRegion) {
+		this.g2d = g2d;
+		this.dirtyRegion = dirtyRegion;
+	}
+
+	/**
+	 * Get the wrapped graphics context.
+	 *
+	 * @return the wrapped graphics context.
+	 */
+	public Graphics2D getDelegate() {return g2d;}
+
+	/**
+	 * Get the union of the device space bounds of all rendering operations since
+	 * the creation of this graphics context or the last call of resetDirtyRegion().
+	 * The bounds are rounded to whole pixels.
+	 *
+	 * @return the dirty region or null if nothing has been rendered.
+	 */
+	public Rectangle2D getDirtyRegion() {
+		if (dirtyRegion.empty) return null;
+		double minX = Math.floor(dirtyRegion.minX);
+		double minY = Math.floor(dirtyRegion.minY);
+		return new Rectangle2D.Double(minX, minY, Math.ceil(dirtyRegion.maxX) - minX, Math.ceil(dirtyRegion.maxY) - minY);
+	}
+
+	/**
+	 * Reset the dirty region.
+	 */
+	public void resetDirtyRegion() {
+		dirtyRegion.empty = true;
+	}
+
+	/**
+	 * Mark the given region, given in device space, as dirty. This can be used
+	 * to report changes which were made without using this graphics context.
+	 *
+	 * @param deviceRegion the region in device space.
+	 */
+	public void addDirtyRegion(Rectangle2D deviceRegion) {
+		if (deviceRegion != null && ! deviceRegion.isEmpty()) {
+			dirtyRegion.add(deviceRegion.getMinX(), deviceRegion.getMinY(), deviceRegion.getMaxX(), deviceRegion.getMaxY());
+		}
+	}
+
+	// -- Dirty region tracking.
+
+	private void addUserRect(double x, double y, double w, double h, double userPadding) {
+		addUserRect(x, y, w, h, userPadding, null);
+	}
+
+	private void addUserRect(double x, double y, double w, double h, double userPadding, AffineTransform extraTransform) {
+		double x1 = Math.min(x, x + w) - userPadding;
+		double y1 = Math.min(y, y + h) - userPadding;
+		double x2 = Math.max(x, x + w) + userPadding;
+		double y2 = Math.max(y, y + h) + userPadding;
+
+		AffineTransform at = g2d.getTransform();
+		if (extraTransform != null) {
+			at.concatenate(extraTransform);
+		}
+
+		double minX, minY, maxX, maxY;
+		if (at.getType() == AffineTransform.TYPE_IDENTITY) {
+			minX = x1; minY = y1; maxX = x2; maxY = y2;
+		} else {
+			double[] pts = {x1, y1, x2, y1, x2, y2, x1, y2};
+			at.transform(pts, 0, pts, 0, 4);
+			minX = maxX = pts[0];
+			minY = maxY = pts[1];
+			for (int i = 2; i < pts.length; i += 2) {
+				minX = Math.min(minX, pts[i]);
+				maxX = Math.max(maxX, pts[i]);
+				minY = Math.min(minY, pts[i + 1]);
+				maxY = Math.max(maxY, pts[i + 1]);
+			}
+		}
+
+		minX -= DEVICE_PADDING;
+		minY -= DEVICE_PADDING;
+		maxX += DEVICE_PADDING;
+		maxY += DEVICE_PADDING;
+
+		Shape clip = g2d.getClip();
+		if (clip != null) {
+			Rectangle2D clipBounds = g2d.getTransform().createTransformedShape(clip).getBounds2D();
+			minX = Math.max(minX, clipBounds.getMinX());
+			minY = Math.max(minY, clipBounds.getMinY());
+			maxX = Math.min(maxX, clipBounds.getMaxX());
+			maxY = Math.min(maxY, clipBounds.getMaxY());
+			if (minX >= maxX || minY >= maxY) return;
+		}
+
+		dirtyRegion.add(minX, minY, maxX, maxY);
+	}
+
+	private void addUserBounds(Rectangle2D r, double userPadding) {
+		addUserRect(r.getX(), r.getY(), r.getWidth(), r.getHeight(), userPadding);
+	}
+
+	private void addStrokedShape(Shape s) {
+		Stroke stroke = g2d.getStroke();
+		if (stroke instanceof BasicStroke) {
+			addUserBounds(s.getBounds2D(), strokePadding((BasicStroke) stroke, true));
+		} else {
+			addUserBounds(stroke.createStrokedShape(s).getBounds2D(), 0.0);
+		}
+	}
+
+	private void addStrokedRect(double x, double y, double w, double h) {
+		addStrokedRect(x, y, w, h, true);
+	}
+
+	private void addStrokedRect(double x, double y, double w, double h, boolean hasJoins) {
+		Stroke stroke = g2d.getStroke();
+		if (stroke instanceof BasicStroke) {
+			addUserRect(x, y, w, h, strokePadding((BasicStroke) stroke, hasJoins));
+		} else {
+			addStrokedShape(new Rectangle2D.Double(x, y, w, h));
+		}
+	}
+
+	private static double strokePadding(BasicStroke stroke, boolean hasJoins) {
+		double padding = stroke.getLineWidth() / 2.0;
+		if (hasJoins && stroke.getLineJoin() == BasicStroke.JOIN_MITER) {
+			padding *= Math.max(stroke.getMiterLimit(), Math.sqrt(2.0));
+		} else if (stroke.getEndCap() == BasicStroke.CAP_SQUARE) {
+			padding *= Math.sqrt(2.0);
+		}
+		return Math.max(padding, 0.5);
+	}
+
+	private void addPolygon(int[] xPoints, int[] yPoints, int nPoints, boolean stroked) {
+		if (nPoints <= 0) return;
+		int minX = xPoints[0], maxX = xPoints[0];
+		int minY = yPoints[0], maxY = yPoints[0];
+		for (int i = 1; i < nPoints; i++) {
+			minX = Math.min(minX, xPoints[i]);
+			maxX = Math.max(maxX, xPoints[i]);
+			minY = Math.min(minY, yPoints[i]);
+			maxY = Math.max(maxY, yPoints[i]);
+		}
+		if (stroked) {
+			addStrokedRect(minX, minY, maxX - minX, maxY - minY);
+		} else {
+			addUserRect(minX, minY, maxX - minX, maxY - minY, 0.0);
+		}
+	}
+
+	private void addImage(Image img, double x, double y) {
+		int w = img.getWidth(null);
+		int h = img.getHeight(null);
+		if (w < 0 || h < 0) {
+			// Size not yet known. Mark everything within the clip as dirty.
+			addUserRect(-Integer.MAX_VALUE / 2, -Integer.MAX_VALUE / 2, Integer.MAX_VALUE, Integer.MAX_VALUE, 0.0);
+		} else {
+			addUserRect(x, y, w, h, 0.0);
+		}
+	}
+
+	private void addString(String str, double x, double y) {
+		if (str == null || str.isEmpty()) return;
+		GlyphVector gv = getFont().createGlyphVector(getFontRenderContext(), str);
+		addGlyphVector(gv, x, y);
+	}
+
+	private void addString(AttributedCharacterIterator iterator, double x, double y) {
+		if (iterator.getBeginIndex() >= iterator.getEndIndex()) return;
+		TextLayout tl = new TextLayout(iterator, getFontRenderContext());
+		Rectangle2D r = tl.getBounds();
+		addUserRect(x + r.getX(), y + r.getY(), r.getWidth(), r.getHeight(), 1.0);
+		iterator.first();
+	}
+
+	private void addGlyphVector(GlyphVector gv, double x, double y) {
+		Rectangle2D r = gv.getVisualBounds();
+		addUserRect(x + r.getX(), y + r.getY(), r.getWidth(), r.getHeight(), 1.0);
+	}
+
+	// -- Rendering operations.
+
+	@Override
+	public void draw(Shape s) {
+		addStrokedShape(s);
+		g2d.draw(s);
+	}
+
+	@Override
+	public void fill(Shape s) {
+		addUserBounds(s.getBounds2D(), 0.0);
+		g2d.fill(s);
+	}
+
+	@Override
+	public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) {
+		int w = img.getWidth(null);
+		int h = img.getHeight(null);
+		if (w < 0 || h < 0) {
+			addImage(img, 0, 0);
+		} else {
+			addUserRect(0, 0, w, h, 0.0, xform);
+		}
+		return g2d.drawImage(img, xform, obs);
+	}
+
+	@Override
+	public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+		Rectangle2D r = (op != null) ? op.getBounds2D(img) : new Rectangle2D.Double(0, 0, img.getWidth(), img.getHeight());
+		addUserRect(x + r.getX(), y + r.getY(), r.getWidth(), r.getHeight(), 0.0);
+		g2d.drawImage(img, op, x, y);
+	}
+
+	@Override
+	public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+		addUserRect(img.getMinX(), img.getMinY(), img.getWidth(), img.getHeight(), 0.0, xform);
+		g2d.drawRenderedImage(img, xform);
+	}
+
+	@Override
+	public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+		addUserRect(img.getMinX(), img.getMinY(), img.getWidth(), img.getHeight(), 0.0, xform);
+		g2d.drawRenderableImage(img, xform);
+	}
+
+	@Override
+	public void drawString(String str, int x, int y) {
+		addString(str, x, y);
+		g2d.drawString(str, x, y);
+	}
+
+	@Override
+	public void drawString(String str, float x, float y) {
+		addString(str, x, y);
+		g2d.drawString(str, x, y);
+	}
+
+	@Override
+	public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+		addString(iterator, x, y);
+		g2d.drawString(iterator, x, y);
+	}
+
+	@Override
+	public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+		addString(iterator, x, y);
+		g2d.drawString(iterator, x, y);
+	}
+
+	@Override
+	public void drawGlyphVector(GlyphVector g, float x, float y) {
+		addGlyphVector(g, x, y);
+		g2d.drawGlyphVector(g, x, y);
+	}
+
+	@Override
+	public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+		addUserRect(x + dx, y + dy, width, height, 0.0);
+		g2d.copyArea(x, y, width, height, dx, dy);
+	}
+
+	@Override
+	public void drawLine(int x1, int y1, int x2, int y2) {
+		addStrokedRect(x1, y1, x2 - x1, y2 - y1, false);
+		g2d.drawLine(x1, y1, x2, y2);
+	}
+
+	@Override
+	public void drawRect(int x, int y, int width, int height) {
+		addStrokedRect(x, y, width, height);
+		g2d.drawRect(x, y, width, height);
+	}
+
+	@Override
+	public void fillRect(int x, int y, int width, int height) {
+		addUserRect(x, y, width, height, 0.0);
+		g2d.fillRect(x, y, width, height);
+	}
+
+	@Override
+	public void clearRect(int x, int y, int width, int height) {
+		addUserRect(x, y, width, height, 0.0);
+		g2d.clearRect(x, y, width, height);
+	}
+
+	@Override
+	public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+		addStrokedRect(x, y, width, height);
+		g2d.drawRoundRect(x, y, width, height, arcWidth, arcHeight);
+	}
+
+	@Override
+	public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+		addUserRect(x, y, width, height, 0.0);
+		g2d.fillRoundRect(x, y, width, height, arcWidth, arcHeight);
+	}
+
+	@Override
+	public void drawOval(int x, int y, int width, int height) {
+		addStrokedRect(x, y, width, height);
+		g2d.drawOval(x, y, width, height);
+	}
+
+	@Override
+	public void fillOval(int x, int y, int width, int height) {
+		addUserRect(x, y, width, height, 0.0);
+		g2d.fillOval(x, y, width, height);
+	}
+
+	@Override
+	public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+		addStrokedRect(x, y, width, height);
+		g2d.drawArc(x, y, width, height, startAngle, arcAngle);
+	}
+
+	@Override
+	public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+		addUserRect(x, y, width, height, 0.0);
+		g2d.fillArc(x, y, width, height, startAngle, arcAngle);
+	}
+
+	@Override
+	public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+		addPolygon(xPoints, yPoints, nPoints, true);
+		g2d.drawPolyline(xPoints, yPoints, nPoints);
+	}
+
+	@Override
+	public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		addPolygon(xPoints, yPoints, nPoints, true);
+		g2d.drawPolygon(xPoints, yPoints, nPoints);
+	}
+
+	@Override
+	public void drawPolygon(Polygon p) {
+		addPolygon(p.xpoints, p.ypoints, p.npoints, true);
+		g2d.drawPolygon(p);
+	}
+
+	@Override
+	public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		addPolygon(xPoints, yPoints, nPoints, false);
+		g2d.fillPolygon(xPoints, yPoints, nPoints);
+	}
+
+	@Override
+	public void fillPolygon(Polygon p) {
+		addPolygon(p.xpoints, p.ypoints, p.npoints, false);
+		g2d.fillPolygon(p);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+		addImage(img, x, y);
+		return g2d.drawImage(img, x, y, observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer) {
+		addUserRect(x, y, width, height, 0.0);
+		return g2d.drawImage(img, x, y, width, height, observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer) {
+		addImage(img, x, y);
+		return g2d.drawImage(img, x, y, bgcolor, observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, int width, int height, Color bgcolor, ImageObserver observer) {
+		addUserRect(x, y, width, height, 0.0);
+		return g2d.drawImage(img, x, y, width, height, bgcolor, observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+		addUserRect(dx1, dy1, dx2 - dx1, dy2 - dy1, 0.0);
+		return g2d.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, Color bgcolor, ImageObserver observer) {
+		addUserRect(dx1, dy1, dx2 - dx1, dy2 - dy1, 0.0);
+		return g2d.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, bgcolor, observer);
+	}
+
+	// -- Pure delegation.
+
+	@Override
+	public Graphics create() {
+		return new DirtyRegionGraphics2D((Graphics2D) g2d.create(), dirtyRegion);
+	}
+
+	@Override
+	public void dispose() {g2d.dispose();}
+
+	@Override
+	public boolean hit(Rectangle rect, Shape s, boolean onStroke) {return g2d.hit(rect, s, onStroke);}
+
+	@Override
+	public GraphicsConfiguration getDeviceConfiguration() {return g2d.getDeviceConfiguration();}
+
+	@Override
+	public void setComposite(Composite comp) {g2d.setComposite(comp);}
+
+	@Override
+	public void setPaint(Paint paint) {g2d.setPaint(paint);}
+
+	@Override
+	public void setStroke(Stroke s) {g2d.setStroke(s);}
+
+	@Override
+	public void setRenderingHint(Key hintKey, Object hintValue) {g2d.setRenderingHint(hintKey, hintValue);}
+
+	@Override
+	public Object getRenderingHint(Key hintKey) {return g2d.getRenderingHint(hintKey);}
+
+	@Override
+	public void setRenderingHints(Map<?, ?> hints) {g2d.setRenderingHints(hints);}
+
+	@Override
+	public void addRenderingHints(Map<?, ?> hints) {g2d.addRenderingHints(hints);}
+
+	@Override
+	public RenderingHints getRenderingHints() {return g2d.getRenderingHints();}
+
+	@Override
+	public void translate(int x, int y) {g2d.translate(x, y);}
+
+	@Override
+	public void translate(double tx, double ty) {g2d.translate(tx, ty);}
+
+	@Override
+	public void rotate(double theta) {g2d.rotate(theta);}
+
+	@Override
+	public void rotate(double theta, double x, double y) {g2d.rotate(theta, x, y);}
+
+	@Override
+	public void scale(double sx, double sy) {g2d.scale(sx, sy);}
+
+	@Override
+	public void shear(double shx, double shy) {g2d.shear(shx, shy);}
+
+	@Override
+	public void transform(AffineTransform tx) {g2d.transform(tx);}
+
+	@Override
+	public void setTransform(AffineTransform tx) {g2d.setTransform(tx);}
+
+	@Override
+	public AffineTransform getTransform() {return g2d.getTransform();}
+
+	@Override
+	public Paint getPaint() {return g2d.getPaint();}
+
+	@Override
+	public Composite getComposite() {return g2d.getComposite();}
+
+	@Override
+	public void setBackground(Color color) {g2d.setBackground(color);}
+
+	@Override
+	public Color getBackground() {return g2d.getBackground();}
+
+	@Override
+	public Stroke getStroke() {return g2d.getStroke();}
+
+	@Override
+	public void clip(Shape s) {g2d.clip(s);}
+
+	@Override
+	public FontRenderContext getFontRenderContext() {return g2d.getFontRenderContext();}
+
+	@Override
+	public Color getColor() {return g2d.getColor();}
+
+	@Override
+	public void setColor(Color c) {g2d.setColor(c);}
+
+	@Override
+	public void setPaintMode() {g2d.setPaintMode();}
+
+	@Override
+	public void setXORMode(Color c1) {g2d.setXORMode(c1);}
+
+	@Override
+	public Font getFont() {return g2d.getFont();}
+
+	@Override
+	public void setFont(Font font) {g2d.setFont(font);}
+
+	@Override
+	public FontMetrics getFontMetrics(Font f) {return g2d.getFontMetrics(f);}
+
+	@Override
+	public Rectangle getClipBounds() {return g2d.getClipBounds();}
+
+	@Override
+	public void clipRect(int x, int y, int width, int height) {g2d.clipRect(x, y, width, height);}
+
+	@Override
+	public void setClip(int x, int y, int width, int height) {g2d.setClip(x, y, width, height);}
+
+	@Override
+	public Shape getClip() {return g2d.getClip();}
+
+	@Override
+	public void setClip(Shape clip) {g2d.setClip(clip);}
+
+}
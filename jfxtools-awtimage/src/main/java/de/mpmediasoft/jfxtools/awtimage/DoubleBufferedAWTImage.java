@@ -0,0 +1,269 @@
+package de.mpmediasoft.jfxtools.awtimage;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.util.Callback;
+
+/**
+ * A double-buffered variant of the AWTImage. Internally two AWT images are
+ * maintained. The update call-backs always render into the back image on
+ * a background thread and the JavaFX application thread only has to swap
+ * the front and back image once the rendering has finished. So even expensive
+ * AWT rendering, like rendering a PDF page, does not block the UI.
+ *
+ * As the displayed JavaFX image changes with every swap, you should bind
+ * your ImageView to the fxImageProperty().
+ *
+ * Note: The back image always contains the content of the image which was
+ * displayed before the current front image. So the call-backs should normally
+ * render the complete content of the image.
+ *
+ * @author Michael Paus
+ */
+public class DoubleBufferedAWTImage {
+
+	private final AWTImage[] images = new AWTImage[2];
+	private final ReadOnlyObjectWrapper<Image> fxImage;
+	private final Executor executor;
+	private final ExecutorService ownExecutorService;
+
+	private int frontIndex = 0;
+	private boolean busy = false;
+	private boolean disposed = false;
+	private UpdateRequest queuedRequest;
+	private Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> registeredUpdateCallback;
+
+	private static class UpdateRequest {
+		final Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> updateCallback;
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		UpdateRequest(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> updateCallback) {
+			this.updateCallback = updateCallback;
+		}
+	}
+
+	/**
+	 * Constructs two internal BufferedImages with the given width and height.
+	 * The rendering is done on an internal background thread.
+	 *
+	 * @param width image width
+	 * @param height image height
+	 */
+	public DoubleBufferedAWTImage(int width, int height) {
+		this(width, height, null);
+	}
+
+	/**
+	 * Constructs two internal BufferedImages with the given width and height.
+	 * The rendering is done via the given executor. The executor must not run
+	 * two tasks of this image concurrently, which is guaranteed internally
+	 * because a new rendering is only started after the previous one has finished.
+	 *
+	 * @param width image width
+	 * @param height image height
+	 * @param executor the executor used for rendering or null to use an internal background thread.
+	 */
+	public DoubleBufferedAWTImage(int width, int height, Executor executor) {
+		images[0] = new AWTImage(width, height);
+		images[1] = new AWTImage(width, height);
+		fxImage = new ReadOnlyObjectWrapper<>(this, "fxImage", images[frontIndex].getFXImage());
+		if (executor != null) {
+			this.executor = executor;
+			this.ownExecutorService = null;
+		} else {
+			this.ownExecutorService = Executors.newSingleThreadExecutor(runnable -> {
+				Thread t = new Thread(runnable);
+				t.setDaemon(true);
+				t.setName("AWTImageRenderer");
+				return t;
+			});
+			this.executor = ownExecutorService;
+		}
+	}
+
+	/**
+	 * The currently displayed JavaFX image. It changes whenever an update has finished.
+	 *
+	 * @return the property of the currently displayed JavaFX image.
+	 */
+	public ReadOnlyObjectProperty<Image> fxImageProperty() {return fxImage.getReadOnlyProperty();}
+
+	/**
+	 * Get access to the currently displayed JavaFX image.
+	 *
+	 * @return the currently displayed JavaFX image.
+	 */
+	public Image getFXImage() {return fxImage.get();}
+
+	/**
+	 * Get access to the currently displayed AWT image.
+	 * Must only be accessed on the JavaFX application thread.
+	 *
+	 * @return the currently displayed AWT image.
+	 */
+	public BufferedImage getAWTImage() {return images[frontIndex].getAWTImage();}
+
+	/**
+	 * Get the width of the image.
+	 *
+	 * @return the width of the image.
+	 */
+	public int getWidth() {return images[frontIndex].getWidth();}
+
+	/**
+	 * Get the height of the image.
+	 *
+	 * @return the height of the image.
+	 */
+	public int getHeight() {return images[frontIndex].getHeight();}
+
+	/**
+	 * Export the currently displayed image asynchronously to an image file.
+	 * Must be called on the JavaFX application thread.
+	 *
+	 * @param formatName the ImageIO format name, e.g., "png" or "jpeg".
+	 * @param file the output file.
+	 * @return a future which is completed with the output file when the export has finished.
+	 */
+	public CompletableFuture<File> exportAsync(String formatName, File file) {
+		assert Platform.isFxApplicationThread() : "Not called on JavaFX application thread.";
+		return images[frontIndex].exportAsync(formatName, file);
+	}
+
+	/**
+	 * Update the image via a one-time-callback. The call-back is called on a background
+	 * thread and must therefore not access any JavaFX nodes. If an update is still waiting
+	 * to be rendered, it is superseded by this one and its future is cancelled.
+	 * Must be called on the JavaFX application thread.
+	 *
+	 * @param oneTimeUpdateCallback a one-time-callback.
+	 * @return a future which is completed on the JavaFX application thread when the
+	 *         rendered image is displayed. It is completed exceptionally with an
+	 *         IllegalStateException if this image has been disposed and with a
+	 *         RejectedExecutionException if the executor does not accept the rendering.
+	 */
+	public CompletableFuture<Void> update(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> oneTimeUpdateCallback) {
+		assert Platform.isFxApplicationThread() : "Not called on JavaFX application thread.";
+		if (disposed) {
+			return CompletableFuture.failedFuture(new IllegalStateException("The image has been disposed."));
+		}
+		if (oneTimeUpdateCallback == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		UpdateRequest request = new UpdateRequest(oneTimeUpdateCallback);
+		if (busy) {
+			if (queuedRequest != null) {
+				queuedRequest.future.cancel(false);
+			}
+			queuedRequest = request;
+		} else {
+			startRendering(request);
+		}
+		return request.future;
+	}
+
+	/**
+	 * Register a call-back which is used every time the update() function is called.
+	 *
+	 * @param registeredUpdateCallback a call-back which is used every time the update() function is called.
+	 */
+	public void setOnUpdate(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> registeredUpdateCallback) {
+		this.registeredUpdateCallback = registeredUpdateCallback;
+	}
+
+	/**
+	 * Update the image via the registerd call-back.
+	 *
+	 * @return a future which is completed when the rendered image is displayed.
+	 */
+	public CompletableFuture<Void> update() {
+		return update(registeredUpdateCallback);
+	}
+
+	/**
+	 * Check whether there is currently a rendering in progress.
+	 *
+	 * @return true if a rendering is in progress.
+	 */
+	public boolean isBusy() {return busy;}
+
+	/**
+	 * Cancel a waiting update and release the internal background thread if there is one.
+	 * Later updates fail with an IllegalStateException.
+	 */
+	public void dispose() {
+		assert Platform.isFxApplicationThread() : "Not called on JavaFX application thread.";
+		disposed = true;
+		if (queuedRequest != null) {
+			queuedRequest.future.cancel(false);
+			queuedRequest = null;
+		}
+		if (ownExecutorService != null) {
+			ownExecutorService.shutdown();
+		}
+	}
+
+	// Must be called on JavaFX application thread.
+	private void startRendering(UpdateRequest request) {
+		if (disposed) {
+			request.future.cancel(false);
+			return;
+		}
+		busy = true;
+		final AWTImage backImage = images[1 - frontIndex];
+		try {
+			executor.execute(() -> {
+				Rectangle2D dirtyRegion = null;
+				Throwable error = null;
+				if (! request.future.isCancelled()) {
+					try {
+						dirtyRegion = backImage.render(request.updateCallback);
+					} catch (Throwable t) {
+						error = t;
+					}
+				}
+				final Rectangle2D finalDirtyRegion = dirtyRegion;
+				final Throwable finalError = error;
+				Platform.runLater(() -> finishRendering(request, finalDirtyRegion, finalError));
+			});
+		} catch (RejectedExecutionException e) {
+			busy = false;
+			request.future.completeExceptionally(e);
+		}
+	}
+
+	// Must be called on JavaFX application thread.
+	private void finishRendering(UpdateRequest request, Rectangle2D dirtyRegion, Throwable error) {
+		busy = false;
+		if (error != null) {
+			request.future.completeExceptionally(error);
+		} else if (! request.future.isCancelled()) {
+			frontIndex = 1 - frontIndex;
+			AWTImage frontImage = images[frontIndex];
+			frontImage.upload(dirtyRegion);
+			fxImage.set(frontImage.getFXImage());
+			request.future.complete(null);
+		}
+
+		if (queuedRequest != null) {
+			UpdateRequest nextRequest = queuedRequest;
+			queuedRequest = null;
+			if (! nextRequest.future.isCancelled()) {
+				startRendering(nextRequest);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,282 @@
+package de.mpmediasoft.jfxtools.awtimage;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Asynchronous export of premultiplied ARGB pixel data, like the content of an
+ * AWTImage or any other IntArgbPre PixelBuffer, to an image file via ImageIO.
+ *
+ * The encoding is done on a background thread. The image writer reads the pixels
+ * in stripes of rows directly from the source, so no full copy of the image is
+ * needed. If the source has to be changed while the export is still running,
+ * preserve() has to be called before, which copies the rows that have not been
+ * read yet. (All image writers of the JDK read the rows from top to bottom.) An
+ * AWTImage does this automatically before each update. For a plain buffer, whose
+ * changes cannot be tracked, the pixels are preserved at once on the calling thread.
+ *
+ * For formats without alpha support, like JPEG, the pixels are just viewed through
+ * an RGB color model which ignores the alpha channel. So no additional converted
+ * image has to be created. As the pixels are premultiplied, this is the same as
+ * compositing the image over black.
+ *
+ * @author Michael Paus
+ */
+public final class ImageExporter {
+
+	// The number of rows which the image writer gets at once.
+	private final static int STRIPE_HEIGHT = 64;
+
+	private final static ExecutorService defaultExecutorService = Executors.newSingleThreadExecutor(runnable -> {
+		Thread t = new Thread(runnable);
+		t.setDaemon(true);
+		t.setName("ImageExporter");
+		return t;
+	});
+
+	/**
+	 * A running export which serves the pixels to the image writer as a RenderedImage
+	 * with one tile per stripe of rows.
+	 */
+	static final class Export implements RenderedImage {
+		private final IntBuffer pixels;
+		private final int width;
+		private final int height;
+		private final int[] masks;
+		private final ColorModel colorModel;
+		private final CompletableFuture<File> future;
+
+		// All rows above this one have already been read by the image writer.
+		private int rowsRead = 0;
+		// Copies of the rows from preservedFromRow on if the source has been changed meanwhile.
+		private int[] preserved;
+		private int preservedFromRow;
+		private boolean done = false;
+
+		private Export(IntBuffer argbPrePixels, int width, int height, String formatName, File file, Executor executor) {
+			if (argbPrePixels.capacity() < Math.multiplyExact(width, height)) {
+				throw new IllegalArgumentException("The buffer is too small for the image.");
+			}
+			this.pixels = argbPrePixels.duplicate();
+			this.width = width;
+			this.height = height;
+			final boolean withAlpha = supportsAlpha(formatName);
+			this.masks = withAlpha ? new int[] {0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000} : new int[] {0x00ff0000, 0x0000ff00, 0x000000ff};
+			this.colorModel = withAlpha
+				? new DirectColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), 32, masks[0], masks[1], masks[2], masks[3], true, DataBuffer.TYPE_INT)
+				: new DirectColorModel(24, masks[0], masks[1], masks[2]);
+			this.future = CompletableFuture.supplyAsync(() -> {
+				try {
+					write(this, formatName, file);
+					return file;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				} finally {
+					finish();
+				}
+			}, executor);
+		}
+
+		CompletableFuture<File> getFuture() {return future;}
+
+		/**
+		 * Copy the rows which have not been read by the image writer yet, so that
+		 * the source can be changed. Can be called on any thread.
+		 */
+		synchronized void preserve() {
+			if (done || preserved != null || rowsRead >= height) return;
+			preservedFromRow = rowsRead;
+			preserved = new int[(height - rowsRead) * width];
+			pixels.get(rowsRead * width, preserved, 0, preserved.length);
+		}
+
+		private synchronized void finish() {
+			done = true;
+			preserved = null;
+		}
+
+		@Override
+		public synchronized Raster getData(Rectangle rect) {
+			final Rectangle r = rect.intersection(new Rectangle(0, 0, width, height));
+			final WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(Math.max(r.width * r.height, 1)), Math.max(r.width, 1), Math.max(r.height, 1), Math.max(r.width, 1), masks, new Point(r.x, r.y));
+			final int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+			for (int y = r.y; y < r.y + r.height; y++) {
+				if (preserved != null && y >= preservedFromRow) {
+					System.arraycopy(preserved, (y - preservedFromRow) * width + r.x, data, (y - r.y) * r.width, r.width);
+				} else {
+					pixels.get(y * width + r.x, data, (y - r.y) * r.width, r.width);
+				}
+			}
+			rowsRead = Math.max(rowsRead, r.y + r.height);
+			return raster;
+		}
+
+		@Override
+		public Raster getData() {return getData(new Rectangle(0, 0, width, height));}
+
+		@Override
+		public WritableRaster copyData(WritableRaster outRaster) {
+			if (outRaster == null) return (WritableRaster) getData();
+			outRaster.setRect(getData(outRaster.getBounds()));
+			return outRaster;
+		}
+
+		@Override
+		public Raster getTile(int tileX, int tileY) {
+			return getData(new Rectangle(0, tileY * STRIPE_HEIGHT, width, STRIPE_HEIGHT));
+		}
+
+		@Override
+		public Vector<RenderedImage> getSources() {return null;}
+
+		@Override
+		public Object getProperty(String name) {return Image.UndefinedProperty;}
+
+		@Override
+		public String[] getPropertyNames() {return null;}
+
+		@Override
+		public ColorModel getColorModel() {return colorModel;}
+
+		@Override
+		public SampleModel getSampleModel() {return new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, STRIPE_HEIGHT, masks);}
+
+		@Override
+		public int getWidth() {return width;}
+
+		@Override
+		public int getHeight() {return height;}
+
+		@Override
+		public int getMinX() {return 0;}
+
+		@Override
+		public int getMinY() {return 0;}
+
+		@Override
+		public int getNumXTiles() {return 1;}
+
+		@Override
+		public int getNumYTiles() {return (height + STRIPE_HEIGHT - 1) / STRIPE_HEIGHT;}
+
+		@Override
+		public int getMinTileX() {return 0;}
+
+		@Override
+		public int getMinTileY() {return 0;}
+
+		@Override
+		public int getTileWidth() {return width;}
+
+		@Override
+		public int getTileHeight() {return STRIPE_HEIGHT;}
+
+		@Override
+		public int getTileGridXOffset() {return 0;}
+
+		@Override
+		public int getTileGridYOffset() {return 0;}
+	}
+
+	private ImageExporter() {}
+
+	/**
+	 * Export the given pixels asynchronously on an internal background thread.
+	 * The pixels are copied on the calling thread, so that they can be changed immediately.
+	 *
+	 * @param argbPrePixels the pixels in IntArgbPre format. The first width * height elements are used.
+	 * @param width image width
+	 * @param height image height
+	 * @param formatName the ImageIO format name, e.g., "png" or "jpeg".
+	 * @param file the output file.
+	 * @return a future which is completed with the output file when the export has finished.
+	 */
+	public static CompletableFuture<File> exportAsync(IntBuffer argbPrePixels, int width, int height, String formatName, File file) {
+		return exportAsync(argbPrePixels, width, height, formatName, file, defaultExecutorService);
+	}
+
+	/**
+	 * Export the given pixels asynchronously via the given executor.
+	 * The pixels are copied on the calling thread, so that they can be changed immediately.
+	 *
+	 * @param argbPrePixels the pixels in IntArgbPre format. The first width * height elements are used.
+	 * @param width image width
+	 * @param height image height
+	 * @param formatName the ImageIO format name, e.g., "png" or "jpeg".
+	 * @param file the output file.
+	 * @param executor the executor used for encoding.
+	 * @return a future which is completed with the output file when the export has finished.
+	 */
+	public static CompletableFuture<File> exportAsync(IntBuffer argbPrePixels, int width, int height, String formatName, File file, Executor executor) {
+		Export export = new Export(argbPrePixels, width, height, formatName, file, executor);
+		export.preserve();
+		return export.getFuture();
+	}
+
+	/**
+	 * Start an export which reads the pixels directly from the buffer. Call preserve() on
+	 * the returned export before the pixels are changed while its future is not done.
+	 *
+	 * @param argbPrePixels the pixels in IntArgbPre format. The first width * height elements are used.
+	 * @param width image width
+	 * @param height image height
+	 * @param formatName the ImageIO format name, e.g., "png" or "jpeg".
+	 * @param file the output file.
+	 * @return the running export.
+	 */
+	static Export startExport(IntBuffer argbPrePixels, int width, int height, String formatName, File file) {
+		return new Export(argbPrePixels, width, height, formatName, file, defaultExecutorService);
+	}
+
+	private static boolean supportsAlpha(String formatName) {
+		String format = formatName.toLowerCase(Locale.ROOT);
+		return ! (format.equals("jpg") || format.equals("jpeg") || format.equals("bmp") || format.equals("wbmp"));
+	}
+
+	private static void write(RenderedImage image, String formatName, File file) throws IOException {
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+		if (! writers.hasNext()) {
+			throw new IOException("No image writer found for format: " + formatName);
+		}
+		ImageWriter writer = writers.next();
+		Files.deleteIfExists(file.toPath());
+		try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+			if (out == null) {
+				throw new IOException("Cannot create output stream for: " + file);
+			}
+			writer.setOutput(out);
+			writer.write(null, new IIOImage(image, null, null), writer.getDefaultWriteParam());
+		} finally {
+			writer.dispose();
+		}
+	}
+
+}
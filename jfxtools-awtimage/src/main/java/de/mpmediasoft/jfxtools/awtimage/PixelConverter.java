@@ -0,0 +1,178 @@
+package de.mpmediasoft.jfxtools.awtimage;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Bulk conversion of the most common BufferedImage types into the
+ * TYPE_INT_ARGB_PRE layout which can directly be used by JavaFX.
+ *
+ * The conversion loops work directly on the underlying arrays. They contain
+ * no data dependent branches or divisions, which gives the JIT a chance to
+ * vectorize them, but this has not been benchmarked. All other image types
+ * are converted via Java2D.
+ *
+ * @author Michael Paus
+ */
+final class PixelConverter {
+
+	private PixelConverter() {}
+
+	/**
+	 * Check whether the memory of the given image can directly be shared with
+	 * a JavaFX PixelBuffer without any conversion.
+	 */
+	static boolean isWrappable(BufferedImage image) {
+		final WritableRaster raster = image.getRaster();
+		final DataBuffer db = raster.getDataBuffer();
+		if (db instanceof DirectDataBufferInt) {
+			return true;
+		}
+		return image.getType() == BufferedImage.TYPE_INT_ARGB_PRE
+			&& db instanceof DataBufferInt
+			&& db.getNumBanks() == 1
+			&& db.getOffset() == 0
+			&& raster.getSampleModelTranslateX() == 0
+			&& raster.getSampleModelTranslateY() == 0
+			&& ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() == image.getWidth();
+	}
+
+	/**
+	 * Convert the given image into a new TYPE_INT_ARGB_PRE image of the same size.
+	 */
+	static BufferedImage convert(BufferedImage src) {
+		final int width = src.getWidth();
+		final int height = src.getHeight();
+		final BufferedImage dst = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		final int[] dstData = ((DataBufferInt) dst.getRaster().getDataBuffer()).getData();
+
+		if (! convertFast(src, dstData, width, height)) {
+			Graphics2D g2d = dst.createGraphics();
+			g2d.setComposite(AlphaComposite.Src);
+			g2d.drawImage(src, 0, 0, null);
+			g2d.dispose();
+		}
+		return dst;
+	}
+
+	private static boolean convertFast(BufferedImage src, int[] dst, int width, int height) {
+		final WritableRaster raster = src.getRaster();
+		final SampleModel sm = raster.getSampleModel();
+		final DataBuffer db = raster.getDataBuffer();
+		if (db.getNumBanks() != 1) return false;
+
+		final int tx = -raster.getSampleModelTranslateX();
+		final int ty = -raster.getSampleModelTranslateY();
+
+		switch (src.getType()) {
+			case BufferedImage.TYPE_INT_ARGB_PRE:
+			case BufferedImage.TYPE_INT_ARGB:
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_BGR: {
+				if (! (db instanceof DataBufferInt) || ! (sm instanceof SinglePixelPackedSampleModel)) return false;
+				final int[] srcData = ((DataBufferInt) db).getData();
+				final SinglePixelPackedSampleModel spsm = (SinglePixelPackedSampleModel) sm;
+				final int stride = spsm.getScanlineStride();
+				final int base = db.getOffset() + ty * stride + tx;
+				for (int y = 0; y < height; y++) {
+					final int s = base + y * stride;
+					final int d = y * width;
+					switch (src.getType()) {
+						case BufferedImage.TYPE_INT_ARGB_PRE: System.arraycopy(srcData, s, dst, d, width); break;
+						case BufferedImage.TYPE_INT_ARGB: intArgbRow(srcData, s, dst, d, width); break;
+						case BufferedImage.TYPE_INT_RGB: intRgbRow(srcData, s, dst, d, width); break;
+						default: intBgrRow(srcData, s, dst, d, width); break;
+					}
+				}
+				return true;
+			}
+			case BufferedImage.TYPE_3BYTE_BGR:
+			case BufferedImage.TYPE_4BYTE_ABGR:
+			case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+			case BufferedImage.TYPE_BYTE_GRAY: {
+				if (! (db instanceof DataBufferByte) || ! (sm instanceof ComponentSampleModel)) return false;
+				final byte[] srcData = ((DataBufferByte) db).getData();
+				final ComponentSampleModel csm = (ComponentSampleModel) sm;
+				final int stride = csm.getScanlineStride();
+				final int pixelStride = csm.getPixelStride();
+				final int[] bandOffsets = csm.getBandOffsets();
+				final int base = db.getOffset() + ty * stride + tx * pixelStride;
+				for (int y = 0; y < height; y++) {
+					final int s = base + y * stride;
+					final int d = y * width;
+					switch (src.getType()) {
+						case BufferedImage.TYPE_3BYTE_BGR: byteRgbRow(srcData, s, pixelStride, bandOffsets, dst, d, width); break;
+						case BufferedImage.TYPE_4BYTE_ABGR: byteArgbRow(srcData, s, pixelStride, bandOffsets, dst, d, width, false); break;
+						case BufferedImage.TYPE_4BYTE_ABGR_PRE: byteArgbRow(srcData, s, pixelStride, bandOffsets, dst, d, width, true); break;
+						default: byteGrayRow(srcData, s + bandOffsets[0], pixelStride, dst, d, width); break;
+					}
+				}
+				return true;
+			}
+			default:
+				return false;
+		}
+	}
+
+	// Rounds c * a / 255 exactly for all 8 bit values without a division or any special cases.
+	private static int mul8(int c, int a) {
+		return ((c * a + 0x80) * 0x101) >> 16;
+	}
+
+	private static int premultiply(int a, int r, int g, int b) {
+		return (a << 24) | (mul8(r, a) << 16) | (mul8(g, a) << 8) | mul8(b, a);
+	}
+
+	private static void intArgbRow(int[] src, int s, int[] dst, int d, int width) {
+		for (int x = 0; x < width; x++) {
+			final int argb = src[s + x];
+			dst[d + x] = premultiply(argb >>> 24, (argb >> 16) & 0xff, (argb >> 8) & 0xff, argb & 0xff);
+		}
+	}
+
+	private static void intRgbRow(int[] src, int s, int[] dst, int d, int width) {
+		for (int x = 0; x < width; x++) {
+			dst[d + x] = src[s + x] | 0xff000000;
+		}
+	}
+
+	private static void intBgrRow(int[] src, int s, int[] dst, int d, int width) {
+		for (int x = 0; x < width; x++) {
+			final int bgr = src[s + x];
+			dst[d + x] = 0xff000000 | ((bgr & 0xff) << 16) | (bgr & 0xff00) | ((bgr >> 16) & 0xff);
+		}
+	}
+
+	private static void byteRgbRow(byte[] src, int s, int pixelStride, int[] bandOffsets, int[] dst, int d, int width) {
+		final int ro = s + bandOffsets[0], go = s + bandOffsets[1], bo = s + bandOffsets[2];
+		for (int x = 0, p = 0; x < width; x++, p += pixelStride) {
+			dst[d + x] = 0xff000000 | ((src[ro + p] & 0xff) << 16) | ((src[go + p] & 0xff) << 8) | (src[bo + p] & 0xff);
+		}
+	}
+
+	private static void byteArgbRow(byte[] src, int s, int pixelStride, int[] bandOffsets, int[] dst, int d, int width, boolean premultiplied) {
+		final int ro = s + bandOffsets[0], go = s + bandOffsets[1], bo = s + bandOffsets[2], ao = s + bandOffsets[3];
+		for (int x = 0, p = 0; x < width; x++, p += pixelStride) {
+			final int a = src[ao + p] & 0xff;
+			final int r = src[ro + p] & 0xff;
+			final int g = src[go + p] & 0xff;
+			final int b = src[bo + p] & 0xff;
+			dst[d + x] = premultiplied ? (a << 24) | (r << 16) | (g << 8) | b : premultiply(a, r, g, b);
+		}
+	}
+
+	private static void byteGrayRow(byte[] src, int s, int pixelStride, int[] dst, int d, int width) {
+		for (int x = 0, p = s; x < width; x++, p += pixelStride) {
+			dst[d + x] = 0xff000000 | ((src[p] & 0xff) * 0x010101);
+		}
+	}
+
+}
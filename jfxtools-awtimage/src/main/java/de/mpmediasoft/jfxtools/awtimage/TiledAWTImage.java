@@ -0,0 +1,261 @@
+package de.mpmediasoft.jfxtools.awtimage;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+import javafx.scene.Node;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
+import javafx.util.Callback;
+
+/**
+ * A tiled variant of the AWTImage for images which are too large for a single
+ * BufferedImage or a single texture. The image is split into square tiles of
+ * a fixed size. Each tile is an AWTImage of its own which is displayed by its
+ * own ImageView. All these ImageViews are arranged in a Pane which can be
+ * added to the scene graph, e.g., as the content of a ScrollPane.
+ *
+ * Only the tiles which intersect the visible area and the dirty region of an
+ * update are rendered and uploaded. Tiles which are not visible are just marked
+ * as stale. A stale tile has missed updates and must be rendered completely, which
+ * is done via the registered call-back (see setOnUpdate()) as soon as it becomes
+ * visible or is hit by another update. So the registered call-back must always be
+ * able to render any part of the image from scratch. Without a registered call-back
+ * stale tiles are only rendered again by an update of the whole image. The tiles are
+ * created lazily when they are rendered for the first time.
+ *
+ * The update call-backs are called once per affected tile with a graphics context
+ * which is translated and clipped accordingly, so they just have to render in image
+ * coordinates. The rectangles returned by the call-backs are also interpreted in
+ * image coordinates.
+ *
+ * @author Michael Paus
+ */
+public class TiledAWTImage {
+
+	/**
+	 * The default width and height of a tile.
+	 */
+	public final static int DEFAULT_TILE_SIZE = 512;
+
+	private final int width;
+	private final int height;
+	private final int tileSize;
+	private final int columns;
+	private final int rows;
+
+	private final AWTImage[] tiles;
+	private final boolean[] staleTiles;
+	private final Pane tilePane;
+
+	private Rectangle2D visibleArea;
+	private Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> registeredUpdateCallback;
+
+	/**
+	 * Constructs a tiled image with the given width and height and the default tile size.
+	 *
+	 * @param width image width
+	 * @param height image height
+	 */
+	public TiledAWTImage(int width, int height) {
+		this(width, height, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Constructs a tiled image with the given width, height and tile size.
+	 *
+	 * @param width image width
+	 * @param height image height
+	 * @param tileSize the width and height of the tiles
+	 */
+	public TiledAWTImage(int width, int height, int tileSize) {
+		if (width <= 0 || height <= 0 || tileSize <= 0) {
+			throw new IllegalArgumentException("Width, height and tile size must be positive.");
+		}
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		columns = (width + tileSize - 1) / tileSize;
+		rows = (height + tileSize - 1) / tileSize;
+
+		tiles = new AWTImage[columns * rows];
+		staleTiles = new boolean[columns * rows];
+		Arrays.fill(staleTiles, true);
+
+		tilePane = new Pane();
+		tilePane.setMinSize(width, height);
+		tilePane.setPrefSize(width, height);
+	}
+
+	/**
+	 * Return the root node of the TiledAWTImage which can be directly
+	 * added to some layout-pane.
+	 *
+	 * @return the root node of the TiledAWTImage.
+	 */
+	public Node getRoot() {return tilePane;}
+
+	/**
+	 * Get the width of the image.
+	 *
+	 * @return the width of the image.
+	 */
+	public int getWidth() {return width;}
+
+	/**
+	 * Get the height of the image.
+	 *
+	 * @return the height of the image.
+	 */
+	public int getHeight() {return height;}
+
+	/**
+	 * Get the width and height of the tiles.
+	 *
+	 * @return the width and height of the tiles.
+	 */
+	public int getTileSize() {return tileSize;}
+
+	/**
+	 * Set the currently visible area of the image in image coordinates. Stale tiles
+	 * which become visible are rendered immediately via the registered call-back.
+	 * If there is none, they stay stale.
+	 *
+	 * @param visibleArea the visible area or null if the whole image is visible.
+	 */
+	public void setVisibleArea(Rectangle2D visibleArea) {
+		this.visibleArea = visibleArea;
+		final Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> callback = registeredUpdateCallback;
+		if (callback != null) {
+			for (int row = 0; row < rows; row++) {
+				for (int column = 0; column < columns; column++) {
+					int index = row * columns + column;
+					if (staleTiles[index] && isVisible(column, row)) {
+						renderTile(column, row, callback, null);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the currently visible area of the image.
+	 *
+	 * @return the visible area or null if the whole image is visible.
+	 */
+	public Rectangle2D getVisibleArea() {return visibleArea;}
+
+	/**
+	 * Update the whole image via a one-time-callback.
+	 *
+	 * @param oneTimeUpdateCallback a one-time-callback.
+	 */
+	public void update(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> oneTimeUpdateCallback) {
+		update(oneTimeUpdateCallback, null);
+	}
+
+	/**
+	 * Update a region of the image via a one-time-callback.
+	 *
+	 * @param oneTimeUpdateCallback a one-time-callback.
+	 * @param dirtyRegion the region to be updated in image coordinates or null for the whole image.
+	 */
+	public void update(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> oneTimeUpdateCallback, Rectangle2D dirtyRegion) {
+		if (oneTimeUpdateCallback != null) {
+			for (int row = 0; row < rows; row++) {
+				for (int column = 0; column < columns; column++) {
+					if (dirtyRegion == null || dirtyRegion.intersects(getTileBounds(column, row))) {
+						if (isVisible(column, row)) {
+							renderTile(column, row, oneTimeUpdateCallback, dirtyRegion);
+						} else {
+							staleTiles[row * columns + column] = true;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Register a call-back which is used every time the update() function is called.
+	 * It is also used to render stale tiles completely, so it must be able to render
+	 * any part of the image from scratch.
+	 *
+	 * @param registeredUpdateCallback a call-back which is used every time the update() function is called.
+	 */
+	public void setOnUpdate(Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> registeredUpdateCallback) {
+		this.registeredUpdateCallback = registeredUpdateCallback;
+	}
+
+	/**
+	 * Update the whole image via the registerd call-back.
+	 */
+	public void update() {
+		update(registeredUpdateCallback);
+	}
+
+	/**
+	 * Update a region of the image via the registerd call-back.
+	 *
+	 * @param dirtyRegion the region to be updated in image coordinates or null for the whole image.
+	 */
+	public void updateRegion(Rectangle2D dirtyRegion) {
+		update(registeredUpdateCallback, dirtyRegion);
+	}
+
+	private Rectangle2D getTileBounds(int column, int row) {
+		int x = column * tileSize;
+		int y = row * tileSize;
+		return new Rectangle2D.Double(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y));
+	}
+
+	private boolean isVisible(int column, int row) {
+		return visibleArea == null || visibleArea.intersects(getTileBounds(column, row));
+	}
+
+	private void renderTile(int column, int row, Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> callback, Rectangle2D dirtyRegion) {
+		final int index = row * columns + column;
+		final Rectangle2D tileBounds = getTileBounds(column, row);
+
+		// A stale (or new) tile may have missed several updates and must be rendered completely,
+		// which a partial one-time update cannot do. So it stays stale without a registered call-back.
+		if (staleTiles[index] && dirtyRegion != null) {
+			if (registeredUpdateCallback == null) return;
+			callback = registeredUpdateCallback;
+			dirtyRegion = null;
+		}
+		final Callback<java.awt.Graphics2D, java.awt.geom.Rectangle2D> tileCallback = callback;
+
+		AWTImage tile = tiles[index];
+		if (tile == null) {
+			tile = new AWTImage((int) tileBounds.getWidth(), (int) tileBounds.getHeight());
+			tiles[index] = tile;
+			ImageView tileView = new ImageView(tile.getFXImage());
+			tileView.relocate(tileBounds.getX(), tileBounds.getY());
+			tilePane.getChildren().add(tileView);
+		}
+
+		final Rectangle2D clip = (dirtyRegion == null) ? tileBounds : tileBounds.createIntersection(dirtyRegion);
+		staleTiles[index] = false;
+
+		tile.update(g2d -> {
+			java.awt.geom.Rectangle2D r;
+			Graphics2D g2 = (Graphics2D) g2d.create();
+			try {
+				g2.translate(-tileBounds.getX(), -tileBounds.getY());
+				g2.clip(clip);
+				r = tileCallback.call(g2);
+			} finally {
+				g2.dispose();
+			}
+			if (r != null) {
+				r = r.createIntersection(clip);
+				return r.isEmpty() ? r : new Rectangle2D.Double(r.getX() - tileBounds.getX(), r.getY() - tileBounds.getY(), r.getWidth(), r.getHeight());
+			} else {
+				return null;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,178 @@
+package de.mpmediasoft.jfxtools.awtimage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the dirty region covers all touched pixels under transform, clip and stroke
+ * and is not much larger than necessary.
+ *
+ * @author Michael Paus
+ */
+public class DirtyRegionGraphics2DTest {
+
+	private final static int SIZE = 200;
+
+	private final BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+
+	private DirtyRegionGraphics2D createGraphics() {
+		Graphics2D g2d = image.createGraphics();
+		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g2d.setColor(Color.RED);
+		return new DirtyRegionGraphics2D(g2d);
+	}
+
+	// The bounds of all pixels which are not transparent anymore.
+	private Rectangle2D touchedBounds() {
+		int minX = SIZE, minY = SIZE, maxX = -1, maxY = -1;
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				if (image.getRGB(x, y) != 0) {
+					minX = Math.min(minX, x);
+					minY = Math.min(minY, y);
+					maxX = Math.max(maxX, x);
+					maxY = Math.max(maxY, y);
+				}
+			}
+		}
+		return (maxX < 0) ? null : new Rectangle2D.Double(minX, minY, maxX - minX + 1, maxY - minY + 1);
+	}
+
+	private void assertCovers(Rectangle2D dirtyRegion, double maxExcess) {
+		Rectangle2D touched = touchedBounds();
+		assertNotNull(touched, "Nothing was rendered.");
+		assertNotNull(dirtyRegion, "No dirty region.");
+		assertTrue(dirtyRegion.contains(touched), "Dirty region " + dirtyRegion + " does not cover " + touched);
+		assertTrue(touched.getMinX() - dirtyRegion.getMinX() <= maxExcess && touched.getMinY() - dirtyRegion.getMinY() <= maxExcess
+			&& dirtyRegion.getMaxX() - touched.getMaxX() <= maxExcess && dirtyRegion.getMaxY() - touched.getMaxY() <= maxExcess,
+			"Dirty region " + dirtyRegion + " is much larger than " + touched);
+	}
+
+	@Test
+	public void nothingRendered() {
+		DirtyRegionGraphics2D g2d = createGraphics();
+		assertNull(g2d.getDirtyRegion());
+		g2d.fillRect(10, 10, 20, 20);
+		g2d.resetDirtyRegion();
+		assertNull(g2d.getDirtyRegion());
+		g2d.dispose();
+	}
+
+	@Test
+	public void fillWithoutTransform() {
+		DirtyRegionGraphics2D g2d = createGraphics();
+		g2d.fillRect(10, 20, 30, 40);
+		assertEquals(new Rectangle2D.Double(9, 19, 32, 42), g2d.getDirtyRegion());
+		assertCovers(g2d.getDirtyRegion(), 1.0);
+		g2d.dispose();
+	}
+
+	@Test
+	public void fillWithTranslationAndScale() {
+		DirtyRegionGraphics2D g2d = createGraphics();
+		g2d.translate(100, 50);
+		g2d.scale(2, 2);
+		g2d.fillRect(0, 0, 10, 10);
+		assertEquals(new Rectangle2D.Double(99, 49, 22, 22), g2d.getDirtyRegion());
+		assertCovers(g2d.getDirtyRegion(), 1.0);
+		g2d.dispose();
+	}
+
+	@Test
+	public void fillWithRotation() {
+		DirtyRegionGraphics2D g2d = createGraphics();
+		g2d.rotate(Math.toRadians(30), SIZE / 2, SIZE / 2);
+		g2d.fill(new Rectangle2D.Double(60, 80, 80, 40));
+		assertCovers(g2d.getDirtyRegion(), 2.0);
+		g2d.dispose();
+	}
+
+	@Test
+	public void fillWithClip() {
+		DirtyRegionGraphics2D g2d = createGraphics();
+		g2d.clipRect(0, 0, 50, 50);
+		g2d.fillRect(20, 30, 100, 100);
+		Rectangle2D dirtyRegion = g2d.getDirtyRegion();
+		assertEquals(new Rectangle2D.Double(19, 29, 31, 21), dirtyRegion);
+		assertCovers(dirtyRegion, 1.0);
+		g2d.dispose();
+	}
+
+	@Test
+	public void fillOutsideOfClip() {
+		DirtyRegionGraphics2D g2d = createGraphics();
+		g2d.clipRect(0, 0, 50, 50);
+		g2d.fillRect(100, 100, 20, 20);
+		assertNull(g2d.getDirtyRegion());
+		assertNull(touchedBounds());
+		g2d.dispose();
+	}
+
+	@Test
+	public void clipWithTransform() {
+		DirtyRegionGraphics2D g2d = createGraphics();
+		g2d.translate(100, 100);
+		g2d.clipRect(0, 0, 20, 20);
+		g2d.fill(new Ellipse2D.Double(-50, -50, 100, 100));
+		Rectangle2D dirtyRegion = g2d.getDirtyRegion();
+		assertEquals(new Rectangle2D.Double(100, 100, 20, 20), dirtyRegion);
+		assertCovers(dirtyRegion, 1.0);
+		g2d.dispose();
+	}
+
+	@Test
+	public void wideStrokeWithMiterJoins() {
+		DirtyRegionGraphics2D g2d = createGraphics();
+		g2d.setStroke(new BasicStroke(20, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10));
+		g2d.drawRect(50, 50, 100, 100);
+		// The miter limit makes the padding very conservative, so only the coverage is checked.
+		Rectangle2D touched = touchedBounds();
+		assertTrue(g2d.getDirtyRegion().contains(touched));
+		g2d.dispose();
+	}
+
+	@Test
+	public void wideStrokeWithSquareCaps() {
+		DirtyRegionGraphics2D g2d = createGraphics();
+		g2d.setStroke(new BasicStroke(16, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_ROUND));
+		g2d.draw(new Line2D.Double(50, 100, 150, 100));
+		assertCovers(g2d.getDirtyRegion(), 8.0);
+		g2d.dispose();
+	}
+
+	@Test
+	public void strokeWithScale() {
+		DirtyRegionGraphics2D g2d = createGraphics();
+		g2d.scale(4, 4);
+		g2d.setStroke(new BasicStroke(2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+		g2d.drawOval(10, 10, 20, 20);
+		assertCovers(g2d.getDirtyRegion(), 2.0);
+		g2d.dispose();
+	}
+
+	@Test
+	public void derivedContextsShareTheDirtyRegion() {
+		DirtyRegionGraphics2D g2d = createGraphics();
+		Graphics2D child = (Graphics2D) g2d.create();
+		child.translate(100, 100);
+		child.fillRect(0, 0, 10, 10);
+		child.dispose();
+		g2d.fillRect(10, 10, 10, 10);
+		assertEquals(new Rectangle2D.Double(9, 9, 102, 102), g2d.getDirtyRegion());
+		g2d.dispose();
+	}
+
+}
@@ -0,0 +1,114 @@
+package de.mpmediasoft.jfxtools.awtimage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the conversion of each BufferedImage type with the conversion by Java2D.
+ *
+ * @author Michael Paus
+ */
+public class PixelConverterTest {
+
+	private final static int WIDTH = 37;
+	private final static int HEIGHT = 23;
+
+	private static BufferedImage createImage(int type) {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+		Random random = new Random(type);
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				int argb = random.nextInt();
+				// Include the special cases of fully transparent and fully opaque pixels.
+				if (x == 0) argb &= 0x00ffffff;
+				if (x == 1) argb |= 0xff000000;
+				image.setRGB(x, y, argb);
+			}
+		}
+		return image;
+	}
+
+	private static BufferedImage convertByJava2D(BufferedImage src) {
+		BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g2d = dst.createGraphics();
+		g2d.setComposite(AlphaComposite.Src);
+		g2d.drawImage(src, 0, 0, null);
+		g2d.dispose();
+		return dst;
+	}
+
+	private static int[] pixels(BufferedImage image) {
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+	private static void assertConvertedLikeJava2D(BufferedImage src, String name) {
+		BufferedImage converted = PixelConverter.convert(src);
+		assertEquals(BufferedImage.TYPE_INT_ARGB_PRE, converted.getType(), name);
+		int[] expected = pixels(convertByJava2D(src));
+		int[] actual = pixels(converted);
+		for (int i = 0; i < expected.length; i++) {
+			// Java2D may round the premultiplication differently, so allow one step per channel.
+			for (int shift = 0; shift < 32; shift += 8) {
+				int e = (expected[i] >>> shift) & 0xff;
+				int a = (actual[i] >>> shift) & 0xff;
+				assertTrue(Math.abs(e - a) <= 1, name + ": pixel " + i + " is " + Integer.toHexString(actual[i]) + " instead of " + Integer.toHexString(expected[i]));
+			}
+		}
+	}
+
+	@Test
+	public void convertsAllTypes() {
+		int[] types = {
+			BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_BGR,
+			BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_4BYTE_ABGR_PRE, BufferedImage.TYPE_BYTE_GRAY,
+			BufferedImage.TYPE_USHORT_565_RGB, BufferedImage.TYPE_USHORT_GRAY, BufferedImage.TYPE_BYTE_INDEXED, BufferedImage.TYPE_BYTE_BINARY
+		};
+		for (int type : types) {
+			assertConvertedLikeJava2D(createImage(type), "Type " + type);
+		}
+	}
+
+	@Test
+	public void convertsSubImages() {
+		int[] types = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY};
+		for (int type : types) {
+			assertConvertedLikeJava2D(createImage(type).getSubimage(3, 5, 20, 11), "Sub-image of type " + type);
+		}
+	}
+
+	@Test
+	public void premultipliesExactly() {
+		BufferedImage src = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+		for (int a = 0; a < 256; a++) {
+			for (int c = 0; c < 256; c++) {
+				src.setRGB(c, a, (a << 24) | (c << 16) | (c << 8) | c);
+			}
+		}
+		int[] converted = pixels(PixelConverter.convert(src));
+		for (int a = 0; a < 256; a++) {
+			for (int c = 0; c < 256; c++) {
+				int expected = (int) Math.round(c * a / 255.0);
+				int argb = converted[a * 256 + c];
+				assertEquals(a, argb >>> 24);
+				assertEquals(expected, argb & 0xff, "c = " + c + ", a = " + a);
+			}
+		}
+	}
+
+	@Test
+	public void wrapsOnlyCompatibleImages() {
+		assertTrue(PixelConverter.isWrappable(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE)));
+		assertFalse(PixelConverter.isWrappable(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB)));
+		assertFalse(PixelConverter.isWrappable(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE).getSubimage(1, 1, 10, 10)));
+	}
+
+}
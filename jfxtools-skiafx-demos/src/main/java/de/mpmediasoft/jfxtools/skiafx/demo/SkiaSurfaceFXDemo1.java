@@ -11,6 +11,7 @@ import io.github.humbleui.skija.PathEffect;
 import io.github.humbleui.types.Point;
 import io.github.humbleui.skija.Shader;
 
+import de.mpmediasoft.jfxtools.skiafx.SkiaPictureCache;
 import de.mpmediasoft.jfxtools.skiafx.SkiaSurfaceFX;
 import de.mpmediasoft.jfxtools.skiafx.SkiaSurfaceFX.RenderCallback;
 import javafx.application.Application;
@@ -114,17 +115,25 @@ public class SkiaSurfaceFXDemo1 extends Application {
         starDemo(Variant.Shaders) // Demo 6
     };
     
+    // The demos are recorded once and only played back when they are shown again.
+    private SkiaPictureCache[] pictures = new SkiaPictureCache[demos.length];
+    
     private SkiaSurfaceFX surface;
     
     private int demoId = 0;
     
+    private void renderDemo() {
+        if (pictures[demoId] == null) pictures[demoId] = new SkiaPictureCache(WIDTH, HEIGHT, demos[demoId]);
+        surface.render(pictures[demoId]);
+    }
+    
     @Override
     public void start(Stage primaryStage) throws Exception {
         Button nextDemoButton = new Button("Next");
         nextDemoButton.setOnAction(ev -> {
             ++demoId;
             if (demoId >= demos.length) demoId = 0;
-            surface.render(demos[demoId]);
+            renderDemo();
         });
         nextDemoButton.setMaxWidth(Double.MAX_VALUE);
         
@@ -139,7 +148,7 @@ public class SkiaSurfaceFXDemo1 extends Application {
         primaryStage.setScene(scene);
         primaryStage.show();
         
-        surface.render(demos[demoId]);
+        renderDemo();
     }
         
     public static void main(String[] args){
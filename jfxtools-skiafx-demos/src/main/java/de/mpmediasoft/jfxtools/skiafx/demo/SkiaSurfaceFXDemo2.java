@@ -0,0 +1,109 @@
+package de.mpmediasoft.jfxtools.skiafx.demo;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+
+import io.github.humbleui.skija.Paint;
+import io.github.humbleui.skija.PaintMode;
+
+import de.mpmediasoft.jfxtools.skiafx.SkiaSurfaceFX;
+import de.mpmediasoft.jfxtools.skiafx.SkiaSurfaceFX.RenderCallback;
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.scene.Scene;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.stage.Stage;
+
+/**
+ * An animated, deliberately heavy Skia scene. With "Buffered" selected it is rendered
+ * on the render thread of a triple-buffered SkiaSurfaceFX, otherwise directly on the
+ * JavaFX application thread. Watch the progress indicator to see the difference.
+ * With "Tiled" selected the scene is rendered in parallel stripes, one per processor.
+ *
+ * @author Michael Paus
+ */
+public class SkiaSurfaceFXDemo2 extends Application {
+
+    private final static int WIDTH = 800, HEIGHT = 600;
+
+    private final static int NUM_RINGS = 60, NUM_CIRCLES = 120;
+
+    private SkiaSurfaceFX directSurface;
+    private SkiaSurfaceFX bufferedSurface;
+
+    private RenderCallback scene(final double time) {
+        return canvas -> {
+            canvas.clear(0xFF101020);
+            try (Paint paint = new Paint().setAntiAlias(true).setMode(PaintMode.STROKE).setStrokeWidth(1.5f)) {
+                for (int r = 0; r < NUM_RINGS; r++) {
+                    final double radius = 20 + r * 4.5;
+                    final double phase = time * (1 + r * 0.02) * (r % 2 == 0 ? 1 : -1);
+                    paint.setColor(0xFF000000 | (r * 4 << 16) | (255 - r * 4 << 8) | 200);
+                    for (int i = 0; i < NUM_CIRCLES; i++) {
+                        final double a = phase + 2 * Math.PI * i / NUM_CIRCLES;
+                        canvas.drawCircle((float)(WIDTH / 2 + radius * cos(a)), (float)(HEIGHT / 2 + radius * sin(a)), 6 + r % 5, paint);
+                    }
+                }
+            }
+            return null;
+        };
+    }
+
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        directSurface = new SkiaSurfaceFX(WIDTH, HEIGHT);
+        bufferedSurface = new SkiaSurfaceFX(WIDTH, HEIGHT, 3);
+        ImageView directView = directSurface.createImageView();
+        ImageView bufferedView = bufferedSurface.createImageView();
+
+        CheckBox bufferedCheckBox = new CheckBox("Buffered");
+        bufferedCheckBox.setSelected(true);
+
+        CheckBox tiledCheckBox = new CheckBox("Tiled");
+        tiledCheckBox.setOnAction(e -> {
+            for (SkiaSurfaceFX surface : new SkiaSurfaceFX[] {directSurface, bufferedSurface}) {
+                if (tiledCheckBox.isSelected()) surface.setParallelTiling(); else surface.setTiling(1, 1);
+            }
+        });
+
+        BorderPane root = new BorderPane();
+        root.setTop(new HBox(10, bufferedCheckBox, tiledCheckBox, new ProgressIndicator()));
+        root.setCenter(bufferedView);
+        bufferedCheckBox.setOnAction(e -> root.setCenter(bufferedCheckBox.isSelected() ? bufferedView : directView));
+
+        AnimationTimer animation = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                RenderCallback renderer = scene(now / 1.0e9);
+                if (bufferedCheckBox.isSelected()) {
+                    bufferedSurface.render(renderer);
+                } else {
+                    directSurface.render(renderer);
+                }
+            }
+        };
+
+        Scene scene = new Scene(root);
+        primaryStage.setScene(scene);
+        primaryStage.show();
+
+        animation.start();
+    }
+
+    @Override
+    public void stop() {
+        directSurface.close();
+        bufferedSurface.close();
+    }
+
+    public static void main(String[] args){
+        launch(args);
+    }
+
+}
+
+class SkiaSurfaceFXDemo2Launcher {public static void main(String[] args) {SkiaSurfaceFXDemo2.main(args);}}
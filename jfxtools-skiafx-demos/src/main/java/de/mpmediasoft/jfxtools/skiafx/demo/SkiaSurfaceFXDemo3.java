@@ -0,0 +1,73 @@
+package de.mpmediasoft.jfxtools.skiafx.demo;
+
+import static java.lang.Math.sin;
+
+import io.github.humbleui.skija.Paint;
+import io.github.humbleui.skija.PaintMode;
+import io.github.humbleui.skija.Path;
+
+import de.mpmediasoft.jfxtools.skiafx.SkiaCanvasFX;
+import javafx.application.Application;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+
+/**
+ * A simple chart drawn with Skia into a resizable SkiaCanvasFX.
+ * Resize the window and watch the number of buffer allocations.
+ *
+ * @author Michael Paus
+ */
+public class SkiaSurfaceFXDemo3 extends Application {
+
+    private final static int WIDTH = 800, HEIGHT = 500;
+
+    private final static int NUM_POINTS = 500;
+
+    private final static int MARGIN = 40;
+
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        SkiaCanvasFX skiaCanvas = new SkiaCanvasFX();
+        Label statusLabel = new Label();
+
+        skiaCanvas.setRenderer(canvas -> {
+            final float w = (float) skiaCanvas.getWidth() - 2 * MARGIN;
+            final float h = (float) skiaCanvas.getHeight() - 2 * MARGIN;
+            canvas.clear(0xFFFFFFFF);
+            try (Paint axisPaint = new Paint().setColor(0xFF404040).setStrokeWidth(1.0f);
+                 Paint linePaint = new Paint().setColor(0xFF4285F4).setMode(PaintMode.STROKE).setStrokeWidth(2.0f).setAntiAlias(true);
+                 Path path = new Path())
+            {
+                canvas.drawLine(MARGIN, MARGIN, MARGIN, MARGIN + h, axisPaint);
+                canvas.drawLine(MARGIN, MARGIN + h, MARGIN + w, MARGIN + h, axisPaint);
+                for (int i = 0; i < NUM_POINTS; i++) {
+                    final double x = 4 * Math.PI * i / (NUM_POINTS - 1);
+                    final float px = MARGIN + w * i / (NUM_POINTS - 1);
+                    final float py = MARGIN + h / 2 - (float)(sin(x) * sin(3.3 * x)) * h / 2;
+                    if (i == 0) path.moveTo(px, py); else path.lineTo(px, py);
+                }
+                canvas.drawPath(path, linePaint);
+            }
+            statusLabel.setText(String.format("%.0f x %.0f, buffer allocations: %d",
+                skiaCanvas.getWidth(), skiaCanvas.getHeight(), skiaCanvas.getAllocationCount()));
+            return null;
+        });
+
+        BorderPane root = new BorderPane();
+        root.setCenter(skiaCanvas);
+        root.setBottom(statusLabel);
+
+        Scene scene = new Scene(root, WIDTH, HEIGHT);
+        primaryStage.setScene(scene);
+        primaryStage.show();
+    }
+
+    public static void main(String[] args){
+        launch(args);
+    }
+
+}
+
+class SkiaSurfaceFXDemo3Launcher {public static void main(String[] args) {SkiaSurfaceFXDemo3.main(args);}}
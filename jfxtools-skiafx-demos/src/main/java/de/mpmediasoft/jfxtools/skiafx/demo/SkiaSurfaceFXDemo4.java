@@ -0,0 +1,101 @@
+package de.mpmediasoft.jfxtools.skiafx.demo;
+
+import io.github.humbleui.skija.Paint;
+
+import de.mpmediasoft.jfxtools.skiafx.SkiaPictureCache;
+import de.mpmediasoft.jfxtools.skiafx.SkiaSurfaceFX;
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Scene;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+
+/**
+ * A few small balls bouncing on a large surface with a static background.
+ * With "Dirty regions" selected only the old and new bounds of the balls are
+ * invalidated, so only these pixels are rendered again. But the whole bounding box
+ * of them is uploaded, which can be large when the balls are far apart.
+ *
+ * @author Michael Paus
+ */
+public class SkiaSurfaceFXDemo4 extends Application {
+
+    private final static int WIDTH = 2000, HEIGHT = 1500;
+
+    private final static int NUM_BALLS = 5;
+
+    private final static float RADIUS = 20;
+
+    private final double[] x = new double[NUM_BALLS], y = new double[NUM_BALLS];
+    private final double[] dx = new double[NUM_BALLS], dy = new double[NUM_BALLS];
+
+    private final SkiaPictureCache background = new SkiaPictureCache(WIDTH, HEIGHT, canvas -> {
+        canvas.clear(0xFFF0F0F0);
+        try (Paint gridPaint = new Paint().setColor(0xFFC0C0C0).setStrokeWidth(1.0f)) {
+            for (int gx = 0; gx < WIDTH; gx += 20) canvas.drawLine(gx, 0, gx, HEIGHT, gridPaint);
+            for (int gy = 0; gy < HEIGHT; gy += 20) canvas.drawLine(0, gy, WIDTH, gy, gridPaint);
+        }
+        return null;
+    });
+
+    private SkiaSurfaceFX surface;
+
+    private Rectangle2D boundsOf(int i) {
+        return new Rectangle2D(x[i] - RADIUS - 1, y[i] - RADIUS - 1, 2 * RADIUS + 2, 2 * RADIUS + 2);
+    }
+
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        for (int i = 0; i < NUM_BALLS; i++) {
+            x[i] = RADIUS + Math.random() * (WIDTH - 2 * RADIUS);
+            y[i] = RADIUS + Math.random() * (HEIGHT - 2 * RADIUS);
+            dx[i] = 2 + Math.random() * 4;
+            dy[i] = 2 + Math.random() * 4;
+        }
+
+        surface = new SkiaSurfaceFX(WIDTH, HEIGHT);
+        CheckBox dirtyRegionsCheckBox = new CheckBox("Dirty regions");
+        dirtyRegionsCheckBox.setSelected(true);
+
+        BorderPane root = new BorderPane();
+        root.setTop(dirtyRegionsCheckBox);
+        root.setCenter(new ScrollPane(surface.createImageView()));
+
+        AnimationTimer animation = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                for (int i = 0; i < NUM_BALLS; i++) {
+                    if (dirtyRegionsCheckBox.isSelected()) surface.invalidate(boundsOf(i));
+                    x[i] += dx[i];
+                    y[i] += dy[i];
+                    if (x[i] < RADIUS || x[i] > WIDTH - RADIUS) dx[i] = -dx[i];
+                    if (y[i] < RADIUS || y[i] > HEIGHT - RADIUS) dy[i] = -dy[i];
+                    if (dirtyRegionsCheckBox.isSelected()) surface.invalidate(boundsOf(i));
+                }
+                surface.render(canvas -> {
+                    background.call(canvas);
+                    try (Paint ballPaint = new Paint().setColor(0xFFE04040).setAntiAlias(true)) {
+                        for (int i = 0; i < NUM_BALLS; i++) canvas.drawCircle((float) x[i], (float) y[i], RADIUS, ballPaint);
+                    }
+                    return null;
+                });
+            }
+        };
+
+        Scene scene = new Scene(root, 800, 600);
+        primaryStage.setScene(scene);
+        primaryStage.show();
+
+        animation.start();
+    }
+
+    public static void main(String[] args){
+        launch(args);
+    }
+
+}
+
+class SkiaSurfaceFXDemo4Launcher {public static void main(String[] args) {SkiaSurfaceFXDemo4.main(args);}}
@@ -0,0 +1,107 @@
+package de.mpmediasoft.jfxtools.skiafx.demo;
+
+import java.util.Random;
+
+import io.github.humbleui.skija.Paint;
+import io.github.humbleui.skija.PaintMode;
+import io.github.humbleui.skija.Path;
+
+import de.mpmediasoft.jfxtools.skiafx.SkiaSurfaceAtlas;
+import de.mpmediasoft.jfxtools.skiafx.SkiaSurfaceFX.RenderCallback;
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.scene.Scene;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.FlowPane;
+import javafx.stage.Stage;
+
+/**
+ * A thousand live sparklines which all share a single SkiaSurfaceAtlas,
+ * i.e., one buffer, one image and one upload per pulse.
+ *
+ * @author Michael Paus
+ */
+public class SkiaSurfaceFXDemo5 extends Application {
+
+    private final static int NUM_SPARKLINES = 1000;
+
+    private final static int SPARKLINE_WIDTH = 120, SPARKLINE_HEIGHT = 30;
+
+    private final static int NUM_VALUES = 40;
+
+    // The number of sparklines which get a new value per frame.
+    private final static int UPDATES_PER_FRAME = 50;
+
+    private final Random random = new Random();
+
+    private final float[][] values = new float[NUM_SPARKLINES][NUM_VALUES];
+
+    private SkiaSurfaceAtlas atlas;
+
+    private SkiaSurfaceAtlas.Slot[] slots = new SkiaSurfaceAtlas.Slot[NUM_SPARKLINES];
+
+    private RenderCallback sparkline(float[] v) {
+        final float[] snapshot = v.clone();
+        return canvas -> {
+            canvas.clear(0xFFFFFFFF);
+            try (Paint paint = new Paint().setColor(0xFF0F9D58).setMode(PaintMode.STROKE).setStrokeWidth(1.5f).setAntiAlias(true);
+                 Path path = new Path())
+            {
+                for (int i = 0; i < snapshot.length; i++) {
+                    final float x = 2 + i * (SPARKLINE_WIDTH - 4) / (float) (snapshot.length - 1);
+                    final float y = SPARKLINE_HEIGHT - 2 - snapshot[i] * (SPARKLINE_HEIGHT - 4);
+                    if (i == 0) path.moveTo(x, y); else path.lineTo(x, y);
+                }
+                canvas.drawPath(path, paint);
+            }
+            return null;
+        };
+    }
+
+    private void addValue(int index) {
+        float[] v = values[index];
+        System.arraycopy(v, 1, v, 0, v.length - 1);
+        v[v.length - 1] = Math.max(0, Math.min(1, v[v.length - 2] + (float) random.nextGaussian() * 0.1f));
+        slots[index].render(sparkline(v));
+    }
+
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        atlas = new SkiaSurfaceAtlas(2048, 2048);
+        FlowPane flowPane = new FlowPane(4, 4);
+        for (int i = 0; i < NUM_SPARKLINES; i++) {
+            for (int j = 0; j < NUM_VALUES; j++) values[i][j] = 0.5f;
+            slots[i] = atlas.allocate(SPARKLINE_WIDTH, SPARKLINE_HEIGHT);
+            flowPane.getChildren().add(slots[i].createImageView());
+            addValue(i);
+        }
+
+        AnimationTimer animation = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                for (int i = 0; i < UPDATES_PER_FRAME; i++) addValue(random.nextInt(NUM_SPARKLINES));
+            }
+        };
+
+        ScrollPane scrollPane = new ScrollPane(flowPane);
+        scrollPane.setFitToWidth(true);
+
+        Scene scene = new Scene(scrollPane, 1000, 700);
+        primaryStage.setScene(scene);
+        primaryStage.show();
+
+        animation.start();
+    }
+
+    @Override
+    public void stop() {
+        atlas.close();
+    }
+
+    public static void main(String[] args){
+        launch(args);
+    }
+
+}
+
+class SkiaSurfaceFXDemo5Launcher {public static void main(String[] args) {SkiaSurfaceFXDemo5.main(args);}}
@@ -0,0 +1,174 @@
+package de.mpmediasoft.jfxtools.skiafx;
+
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+
+import io.github.humbleui.types.Rect;
+
+import de.mpmediasoft.jfxtools.skiafx.SkiaSurfaceFX.RenderCallback;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Region;
+
+/**
+ * A resizable JavaFX node which shows the rendering of a Skia RenderCallback.
+ * The callback is executed again whenever the size of the node changes. It can use
+ * getWidth() and getHeight() of this node to adapt its drawing to the current size.
+ *
+ * The underlying SkiaSurfaceFX is only replaced when the size crosses a multiple of the
+ * size increment, like the NativeRenderingCanvas does it. Its direct buffer is allocated
+ * with some spare capacity and is reused as long as it is large enough, only the row stride
+ * of the new surface changes. So resizing a window does not allocate on every layout pass.
+ * Replaced buffers are freed deterministically via their Arena.
+ *
+ * @author Michael Paus
+ */
+public class SkiaCanvasFX extends Region {
+
+    private final static int DEFAULT_SIZE_INCREMENT = 64;
+
+    // Spare capacity of a newly allocated buffer.
+    private final static double GROWTH_FACTOR = 1.25;
+
+    // The buffer is reallocated if less than this fraction of it would be used.
+    private final static double SHRINK_FACTOR = 0.25;
+
+    private final ImageView imageView = new ImageView();
+
+    private final int sizeIncrement;
+
+    private Arena bufferArena;
+
+    private ByteBuffer byteBuffer;
+
+    private SkiaSurfaceFX surface;
+
+    private RenderCallback renderer;
+
+    private int viewWidth = 0;
+
+    private int viewHeight = 0;
+
+    private int allocationCount = 0;
+
+    /**
+     * Create a new canvas with the default size increment of 64 pixels.
+     */
+    public SkiaCanvasFX() {
+        this(DEFAULT_SIZE_INCREMENT);
+    }
+
+    /**
+     * Create a new canvas.
+     *
+     * @param sizeIncrement the size increment in pixels in which the surface grows or shrinks.
+     */
+    public SkiaCanvasFX(int sizeIncrement) {
+        if (sizeIncrement < 1) {
+            throw new IllegalArgumentException("The size increment must be positive.");
+        }
+        this.sizeIncrement = sizeIncrement;
+        imageView.setManaged(false);
+        getChildren().add(imageView);
+    }
+
+    /**
+     * Set the callback which renders the content of this canvas and render it.
+     *
+     * @param renderer the renderer Callback or null.
+     */
+    public void setRenderer(RenderCallback renderer) {
+        this.renderer = renderer;
+        render();
+    }
+
+    public RenderCallback getRenderer() {return renderer;}
+
+    /**
+     * Render the content again, e.g., because the data behind it has changed.
+     * Must be called on the JavaFX application thread.
+     */
+    public void render() {
+        if (surface == null || renderer == null) return;
+        final int w = viewWidth;
+        final int h = viewHeight;
+        surface.render(canvas -> {
+            int saveCount = canvas.save();
+            try {
+                canvas.clipRect(Rect.makeWH(w, h));
+                Rectangle2D dirty = renderer.call(canvas);
+                return (dirty != null) ? dirty : new Rectangle2D(0, 0, w, h);
+            } finally {
+                canvas.restoreToCount(saveCount);
+            }
+        });
+    }
+
+    /**
+     * Get the current surface if you need it. It is replaced when the canvas is resized and
+     * is then larger than the canvas, so only its top-left part is visible.
+     *
+     * @return the surface or null if the canvas has not been laid out yet.
+     */
+    public SkiaSurfaceFX getSurface() {
+        return surface;
+    }
+
+    /**
+     * Get the number of buffer allocations so far.
+     *
+     * @return the allocation count.
+     */
+    public int getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * Free the surface and its buffer. The canvas allocates them again on the next layout pass.
+     */
+    public void dispose() {
+        if (surface != null) {
+            imageView.setImage(null);
+            surface.close();
+            surface = null;
+        }
+        if (bufferArena != null) {
+            SkiaSurfaceFX.releaseLater(bufferArena::close);
+            bufferArena = null;
+            byteBuffer = null;
+        }
+        viewWidth = 0;
+        viewHeight = 0;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        final int w = (int) Math.ceil(getWidth());
+        final int h = (int) Math.ceil(getHeight());
+        if (w <= 0 || h <= 0 || (w == viewWidth && h == viewHeight)) return;
+        viewWidth = w;
+        viewHeight = h;
+        ensureCapacity(roundUp(w), roundUp(h));
+        imageView.setViewport(new Rectangle2D(0, 0, w, h));
+        render();
+    }
+
+    private void ensureCapacity(int surfaceWidth, int surfaceHeight) {
+        if (surface != null && surface.getWidth() == surfaceWidth && surface.getHeight() == surfaceHeight) return;
+        final int requiredBytes = surfaceWidth * surfaceHeight * 4;
+        if (surface != null) surface.close();
+        if (byteBuffer == null || byteBuffer.capacity() < requiredBytes || requiredBytes < byteBuffer.capacity() * SHRINK_FACTOR) {
+            if (bufferArena != null) SkiaSurfaceFX.releaseLater(bufferArena::close);
+            bufferArena = Arena.ofShared();
+            byteBuffer = bufferArena.allocate((long) Math.min(requiredBytes * GROWTH_FACTOR, Integer.MAX_VALUE), 64).asByteBuffer();
+            ++allocationCount;
+        }
+        surface = new SkiaSurfaceFX(byteBuffer, surfaceWidth, surfaceHeight);
+        imageView.setImage(surface.getImage());
+    }
+
+    private int roundUp(int size) {
+        return ((size + sizeIncrement - 1) / sizeIncrement) * sizeIncrement;
+    }
+
+}
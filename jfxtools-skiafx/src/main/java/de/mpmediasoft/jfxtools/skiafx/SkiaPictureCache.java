@@ -0,0 +1,183 @@
+package de.mpmediasoft.jfxtools.skiafx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.github.humbleui.skija.Canvas;
+import io.github.humbleui.skija.Picture;
+import io.github.humbleui.skija.PictureRecorder;
+import io.github.humbleui.types.Rect;
+
+import de.mpmediasoft.jfxtools.skiafx.SkiaSurfaceFX.RenderCallback;
+import javafx.geometry.Rectangle2D;
+
+/**
+ * A RenderCallback which records other RenderCallbacks into Skia Pictures once and
+ * afterwards only plays back these Pictures. So all the Paths, Paints, PathEffects etc.
+ * which a callback creates are only built again when the content has really changed.
+ *
+ * The content can be split into layers which are drawn on top of each other in the
+ * order in which they have been added. Each layer is recorded into its own Picture,
+ * so a static background only has to be recorded once while an overlay which changes
+ * frequently is invalidated and re-recorded alone.
+ *
+ * Layers may be added and invalidated on the JavaFX application thread while the
+ * cache is used by the render thread of a buffered SkiaSurfaceFX. The cache may also
+ * be played back by several tiles of a tiled SkiaSurfaceFX in parallel.
+ *
+ * @author Michael Paus
+ */
+public class SkiaPictureCache implements RenderCallback, AutoCloseable {
+
+    private static class Layer {
+        final RenderCallback renderer;
+        volatile boolean invalid = true;
+        Picture picture; // Guarded by the cache.
+
+        Layer(RenderCallback renderer) {
+            this.renderer = renderer;
+        }
+    }
+
+    private final Rect bounds;
+
+    private final List<Layer> layers = new CopyOnWriteArrayList<>();
+
+    private volatile boolean closed = false;
+
+    private int recordCount = 0;
+
+    // Guarded by the cache. Replaced pictures are closed when no playback is running anymore.
+    private int runningPlaybacks = 0;
+    private final List<Picture> retiredPictures = new ArrayList<>();
+
+    /**
+     * Create an empty cache.
+     *
+     * @param width the width of the recorded content in pixels.
+     * @param height the height of the recorded content in pixels.
+     */
+    public SkiaPictureCache(int width, int height) {
+        bounds = Rect.makeWH(width, height);
+    }
+
+    /**
+     * Create a cache with a single layer.
+     *
+     * @param width the width of the recorded content in pixels.
+     * @param height the height of the recorded content in pixels.
+     * @param renderer the renderer Callback of the layer.
+     */
+    public SkiaPictureCache(int width, int height, RenderCallback renderer) {
+        this(width, height);
+        layers.add(new Layer(renderer));
+    }
+
+    /**
+     * Add a new layer on top of all existing layers.
+     *
+     * @param renderer the renderer Callback of the layer.
+     * @return the index of the new layer.
+     */
+    public int addLayer(RenderCallback renderer) {
+        layers.add(new Layer(renderer));
+        return layers.size() - 1;
+    }
+
+    public int getLayerCount() {return layers.size();}
+
+    /**
+     * Get the number of recordings so far. Mainly useful for debugging.
+     *
+     * @return the number of recordings.
+     */
+    public synchronized int getRecordCount() {return recordCount;}
+
+    /**
+     * Invalidate a layer so that it is recorded again the next time this cache is rendered.
+     *
+     * @param layerIndex the index of the layer.
+     */
+    public void invalidate(int layerIndex) {
+        layers.get(layerIndex).invalid = true;
+    }
+
+    /**
+     * Invalidate all layers.
+     */
+    public void invalidateAll() {
+        for (Layer layer : layers) layer.invalid = true;
+    }
+
+    /**
+     * Record all invalid layers and play back all layers into the given canvas.
+     * The canvas is not cleared before.
+     *
+     * @param canvas the canvas to draw into.
+     * @return always null because the whole content has been drawn.
+     */
+    @Override
+    public Rectangle2D call(Canvas canvas) {
+        if (closed) return null;
+        try {
+            for (Picture picture : startPlayback()) {
+                canvas.drawPicture(picture);
+            }
+        } finally {
+            endPlayback();
+        }
+        return null;
+    }
+
+    /**
+     * Release all recorded Pictures. Must not be called while the cache is being rendered.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Layer layer : layers) {
+            if (layer.picture != null) {
+                layer.picture.close();
+                layer.picture = null;
+            }
+        }
+        closeRetiredPictures();
+    }
+
+    // Records all invalid layers. Replaced pictures are not closed here because another
+    // tile may still be playing them back. They are retired until all playbacks have ended.
+    private synchronized List<Picture> startPlayback() {
+        ++runningPlaybacks;
+        List<Picture> pictures = new ArrayList<>(layers.size());
+        for (Layer layer : layers) {
+            if (layer.invalid) {
+                // Reset before recording so that an invalidation during the recording is not lost.
+                layer.invalid = false;
+                if (layer.picture != null) retiredPictures.add(layer.picture);
+                layer.picture = record(layer.renderer);
+                ++recordCount;
+            }
+            pictures.add(layer.picture);
+        }
+        return pictures;
+    }
+
+    private synchronized void endPlayback() {
+        if (--runningPlaybacks == 0) closeRetiredPictures();
+    }
+
+    private void closeRetiredPictures() {
+        for (Picture picture : retiredPictures) picture.close();
+        retiredPictures.clear();
+    }
+
+    private Picture record(RenderCallback renderer) {
+        try (PictureRecorder recorder = new PictureRecorder()) {
+            Canvas recordingCanvas = recorder.beginRecording(bounds);
+            renderer.call(recordingCanvas);
+            return recorder.finishRecordingAsPicture();
+        }
+    }
+
+}
@@ -0,0 +1,350 @@
+package de.mpmediasoft.jfxtools.skiafx;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import io.github.humbleui.skija.ImageInfo;
+import io.github.humbleui.skija.Surface;
+
+import de.mpmediasoft.jfxtools.skiafx.SkiaSurfaceFX.RenderCallback;
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * An atlas which packs many small Skia surfaces into one large buffer and image.
+ * This is much cheaper than a separate SkiaSurfaceFX for each of thousands of small
+ * items like sparklines or icons because they all share one direct buffer, one
+ * PixelBuffer and thus one texture.
+ *
+ * Each slot of the atlas has its own Skia surface over its part of the buffer with the
+ * row stride of the whole atlas and is displayed by an ImageView with a viewport into
+ * the shared image. The slots are packed into horizontal shelves. Renderings of slots
+ * are collected and executed together once per pulse. Nearby changed slots, typically
+ * those on the same shelf, are grouped into clusters and each cluster is rendered and
+ * uploaded by one call of updateBuffer. So only little unchanged area is uploaded even
+ * if the changed slots are spread over the whole atlas.
+ *
+ * All methods must be called on the JavaFX application thread.
+ *
+ * @author Michael Paus
+ */
+public class SkiaSurfaceAtlas implements AutoCloseable {
+
+    /**
+     * A rectangular part of the atlas with its own Skia surface.
+     */
+    public class Slot implements AutoCloseable {
+
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private final Surface surface;
+        private boolean closed = false;
+
+        private Slot(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.surface = Surface.makeRasterDirect(ImageInfo.makeN32Premul(width, height), address + ((long) y * atlasWidth + x) * 4, atlasWidth * 4);
+        }
+
+        public int getX() {return x;}
+
+        public int getY() {return y;}
+
+        public int getWidth() {return width;}
+
+        public int getHeight() {return height;}
+
+        /**
+         * Get the part of the atlas image which belongs to this slot.
+         *
+         * @return the viewport of this slot.
+         */
+        public Rectangle2D getViewport() {
+            return new Rectangle2D(x, y, width, height);
+        }
+
+        /**
+         * Create a new ImageView which displays this slot.
+         *
+         * @return the new ImageView.
+         */
+        public ImageView createImageView() {
+            ImageView imageView = new ImageView(image);
+            imageView.setViewport(getViewport());
+            return imageView;
+        }
+
+        /**
+         * Render something into the Canvas of this slot. The Callback is executed with
+         * the next pulse together with all other pending renderings of this atlas. If this
+         * method is called several times before, only the last Callback is executed. The
+         * Canvas has the size of the slot and its result is ignored.
+         *
+         * @param renderer the renderer Callback.
+         */
+        public void render(RenderCallback renderer) {
+            if (closed) return;
+            pendingRenderers.put(this, renderer);
+            flushTimer.start();
+        }
+
+        /**
+         * Give this slot back to the atlas. Its pixels may be reused by another slot.
+         */
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            pendingRenderers.remove(this);
+            slots.remove(this);
+            addFreeRect(new int[] {x, y, width, height});
+            SkiaSurfaceFX.releaseLater(surface::close);
+        }
+
+    }
+
+    // The alignment of the allocated pixels in bytes.
+    private final static long PIXEL_ALIGNMENT = 64;
+
+    // A cluster of slots is not extended if its upload area would exceed the area of its slots by more than this factor.
+    private final static int MAX_UPLOAD_OVERHEAD = 2;
+
+    private final int atlasWidth;
+
+    private final int atlasHeight;
+
+    private final Arena arena;
+
+    private final PixelBuffer<IntBuffer> pixelBuffer;
+
+    private final Image image;
+
+    private final long address;
+
+    // Each shelf is {y, height, usedWidth}.
+    private final List<int[]> shelves = new ArrayList<>();
+    private int shelvesHeight = 0;
+
+    // Rectangles {x, y, width, height} of closed slots. Adjacent ones are merged.
+    private final List<int[]> freeRects = new ArrayList<>();
+
+    private final List<Slot> slots = new ArrayList<>();
+
+    private final Map<Slot, RenderCallback> pendingRenderers = new LinkedHashMap<>();
+
+    private final AnimationTimer flushTimer;
+
+    private boolean closed = false;
+
+    private int updateCount = 0;
+
+    /**
+     * Create a new atlas.
+     *
+     * @param width the width of the atlas in pixels.
+     * @param height the height of the atlas in pixels.
+     */
+    public SkiaSurfaceAtlas(int width, int height) {
+        this.atlasWidth = width;
+        this.atlasHeight = height;
+        arena = Arena.ofShared();
+        try {
+            MemorySegment segment = arena.allocate((long) width * height * 4, PIXEL_ALIGNMENT);
+            ByteBuffer byteBuffer = segment.asByteBuffer();
+            address = segment.address();
+            pixelBuffer = new PixelBuffer<>(width, height, byteBuffer.asIntBuffer(), PixelFormat.getIntArgbPreInstance());
+            image = new WritableImage(pixelBuffer);
+        } catch (RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+        flushTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                flush();
+            }
+        };
+    }
+
+    public int getWidth() {return atlasWidth;}
+
+    public int getHeight() {return atlasHeight;}
+
+    /**
+     * Get the shared image of all slots.
+     *
+     * @return the image.
+     */
+    public Image getImage() {
+        return image;
+    }
+
+    /**
+     * Get the number of open slots.
+     *
+     * @return the slot count.
+     */
+    public int getSlotCount() {
+        return slots.size();
+    }
+
+    /**
+     * Get the number of image updates so far. Mainly useful for debugging.
+     *
+     * @return the update count.
+     */
+    public int getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * Allocate a new slot. The space of closed slots is reused if it is large enough and
+     * the unused rest of it stays available for further slots. Otherwise the slot is put on the flattest shelf with enough space or on a new shelf.
+     *
+     * @param width the width of the slot in pixels.
+     * @param height the height of the slot in pixels.
+     * @return the new slot.
+     * @throws IllegalStateException if the atlas is closed or full.
+     */
+    public Slot allocate(int width, int height) {
+        if (closed) throw new IllegalStateException("The atlas is closed.");
+        if (width < 1 || height < 1 || width > atlasWidth || height > atlasHeight) {
+            throw new IllegalArgumentException("Invalid slot size " + width + " x " + height + ".");
+        }
+        Slot slot = null;
+        ListIterator<int[]> it = freeRects.listIterator();
+        while (slot == null && it.hasNext()) {
+            int[] rect = it.next();
+            if (width <= rect[2] && height <= rect[3]) {
+                it.remove();
+                slot = new Slot(rect[0], rect[1], width, height);
+                // Split the rest into the part right of the slot and the full-width part below it.
+                if (width < rect[2]) it.add(new int[] {rect[0] + width, rect[1], rect[2] - width, height});
+                if (height < rect[3]) it.add(new int[] {rect[0], rect[1] + height, rect[2], rect[3] - height});
+            }
+        }
+        if (slot == null) {
+            int[] best = null;
+            for (int[] shelf : shelves) {
+                if (height <= shelf[1] && width <= atlasWidth - shelf[2] && (best == null || shelf[1] < best[1])) best = shelf;
+            }
+            if (best == null) {
+                if (shelvesHeight + height > atlasHeight) throw new IllegalStateException("The atlas is full.");
+                best = new int[] {shelvesHeight, height, 0};
+                shelves.add(best);
+                shelvesHeight += height;
+            }
+            slot = new Slot(best[2], best[0], width, height);
+            best[2] += width;
+        }
+        slots.add(slot);
+        return slot;
+    }
+
+    /**
+     * Execute all pending renderings at once and upload the clusters of their slots.
+     * This is done automatically once per pulse but may also be called explicitly.
+     * The pending renderings are discarded even if one of them fails.
+     */
+    public void flush() {
+        if (pendingRenderers.isEmpty()) {
+            flushTimer.stop();
+            return;
+        }
+        try {
+            // Sort the slots by position, so that the slots of a shelf follow each other.
+            final List<Slot> pending = new ArrayList<>(pendingRenderers.keySet());
+            pending.sort(Comparator.comparingInt((Slot slot) -> slot.y).thenComparingInt(slot -> slot.x));
+            int from = 0;
+            while (from < pending.size()) {
+                Slot first = pending.get(from);
+                int minX = first.x, minY = first.y, maxX = first.x + first.width, maxY = first.y + first.height;
+                long slotsArea = (long) first.width * first.height;
+                int to = from + 1;
+                while (to < pending.size()) {
+                    Slot slot = pending.get(to);
+                    int x0 = Math.min(minX, slot.x), y0 = Math.min(minY, slot.y);
+                    int x1 = Math.max(maxX, slot.x + slot.width), y1 = Math.max(maxY, slot.y + slot.height);
+                    long area = slotsArea + (long) slot.width * slot.height;
+                    if ((long) (x1 - x0) * (y1 - y0) > MAX_UPLOAD_OVERHEAD * area) break;
+                    minX = x0; minY = y0; maxX = x1; maxY = y1;
+                    slotsArea = area;
+                    to++;
+                }
+                upload(pending.subList(from, to), new Rectangle2D(minX, minY, maxX - minX, maxY - minY));
+                from = to;
+            }
+        } finally {
+            pendingRenderers.clear();
+        }
+    }
+
+    private void upload(List<Slot> cluster, Rectangle2D bounds) {
+        pixelBuffer.updateBuffer(pb -> {
+            for (Slot slot : cluster) {
+                // A slot may have been closed by the renderer of another one.
+                RenderCallback renderer = pendingRenderers.get(slot);
+                if (renderer != null) renderer.call(slot.surface.getCanvas());
+            }
+            return bounds;
+        });
+        ++updateCount;
+    }
+
+    // Merges the given rectangle with all adjacent free rectangles of the same width or height.
+    private void addFreeRect(int[] rect) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            Iterator<int[]> it = freeRects.iterator();
+            while (it.hasNext()) {
+                int[] other = it.next();
+                boolean sameRow = rect[1] == other[1] && rect[3] == other[3] && (rect[0] + rect[2] == other[0] || other[0] + other[2] == rect[0]);
+                boolean sameColumn = rect[0] == other[0] && rect[2] == other[2] && (rect[1] + rect[3] == other[1] || other[1] + other[3] == rect[1]);
+                if (sameRow) {
+                    rect = new int[] {Math.min(rect[0], other[0]), rect[1], rect[2] + other[2], rect[3]};
+                } else if (sameColumn) {
+                    rect = new int[] {rect[0], Math.min(rect[1], other[1]), rect[2], rect[3] + other[3]};
+                } else {
+                    continue;
+                }
+                it.remove();
+                merged = true;
+                break;
+            }
+        }
+        freeRects.add(rect);
+    }
+
+    /**
+     * Close all slots and free the pixels. The image should not be displayed anymore.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        flushTimer.stop();
+        pendingRenderers.clear();
+        for (Slot slot : new ArrayList<>(slots)) slot.close();
+        SkiaSurfaceFX.releaseLater(arena::close);
+    }
+
+}
@@ -1,5 +1,6 @@
 package de.mpmediasoft.jfxtools.skiafx;
 
+import java.lang.foreign.Arena;
 import java.lang.foreign.MemorySegment; // new
 //import jdk.incubator.foreign.MemorySegment; // old
 
@@ -7,13 +8,30 @@ import java.lang.reflect.Field;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 import io.github.humbleui.skija.Canvas;
+import io.github.humbleui.skija.ClipMode;
 import io.github.humbleui.skija.ImageInfo;
+import io.github.humbleui.skija.Path;
 import io.github.humbleui.skija.Surface;
+import io.github.humbleui.types.Rect;
 
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.image.PixelBuffer;
 import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
@@ -24,47 +42,208 @@ import javafx.util.Callback;
  * You can draw into the Skia Canvas of it via the render method.
  * The rendering result is made directly available in an image via
  * a PixelBuffer.
- * 
+ *
+ * By default the rendering happens directly on the JavaFX application thread.
+ * Optionally the surface can be buffered. Then it owns two or three Skia surfaces
+ * over consecutive slices of one direct buffer which are rendered on a dedicated
+ * render thread. The JavaFX application thread only switches the displayed slice
+ * via the viewport of the ImageView, like the NativeRenderingCanvas does. So heavy
+ * Skia scenes do not block the JavaFX application thread anymore.
+ *
+ * Large surfaces can also be split into tiles which are rendered in parallel,
+ * see setTiling().
+ *
+ * The pixels are allocated via an Arena and are freed deterministically when the
+ * surface is closed. Many short-lived surfaces can share a user supplied Arena which
+ * then frees all of their pixels at once.
+ *
  * @author Michael Paus
  */
-public class SkiaSurfaceFX {
-    
+public class SkiaSurfaceFX implements AutoCloseable {
+
     // Uses the "Foreign Memory Access API" introduced in Java 14.
     // Needs --add-modules=jdk.incubator.foreign on the command line if set to true!
     private final static boolean AVOID_ILLEGAL_REFLECTION = true;
-    
+
+    // A buffer which is no longer displayed may still be uploaded during the current pulse,
+    // so it is only reused after this number of pulses.
+    private final static int RETIRE_PULSES = 2;
+
+    // The alignment of the allocated pixels in bytes.
+    private final static long PIXEL_ALIGNMENT = 64;
+
     public static interface RenderCallback extends Callback<Canvas,Rectangle2D> {}
-    
+
+    // The tiles of all buffers. Immutable, so that it can be replaced while rendering.
+    private static class Tiling {
+        final Rect[] bounds;
+        final Surface[][] surfaces; // [buffer][tile]
+
+        Tiling(Rect[] bounds, Surface[][] surfaces) {
+            this.bounds = bounds;
+            this.surfaces = surfaces;
+        }
+
+        void close() {
+            for (Surface[] tileSurfaces : surfaces) {
+                for (Surface tileSurface : tileSurfaces) tileSurface.close();
+            }
+        }
+    }
+
+    private final int width;
+
+    private final int height;
+
+    private final int numBuffers;
+
     private final ByteBuffer byteBuffer;
-    
+
     private final PixelBuffer<IntBuffer> pixelBuffer;
-    
+
     private final Image image;
-    
-    private final Surface surface;
-    
+
+    private final Surface[] surfaces;
+
+    private final long address;
+
+    // The arena of the pixels if they are freed together with this surface.
+    private final Arena ownArena;
+
+    private volatile boolean closed = false;
+
+    private volatile Tiling tiling = null;
+
+    // Replaced tilings which may still be used by the render thread.
+    private final List<Tiling> retiredTilings = new ArrayList<>();
+
+    private final ReadOnlyObjectWrapper<Rectangle2D> viewport = new ReadOnlyObjectWrapper<>();
+
+    // Only used in buffered mode.
+    private final ExecutorService renderExecutor;
+    private final AtomicReference<RenderCallback> pendingRenderer = new AtomicReference<>();
+    private final BlockingQueue<Integer> freeBuffers = new LinkedBlockingQueue<>();
+    private final List<int[]> retiringBuffers = new ArrayList<>();
+    private final AnimationTimer retireTimer;
+    private int displayedBuffer = 0;
+
+    // All regions invalidated since the last rendering in whole pixels and their bounding box.
+    // Only used in unbuffered mode.
+    private boolean dirty = false;
+    private int dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY;
+    private final List<Rect> dirtyRects = new ArrayList<>();
+
     /**
-     * Generates a raster Skia surface.<br>
+     * Generates a raster Skia surface which is rendered on the JavaFX application thread.<br>
      * Note: Skia does not do any automatic scaling for Retina or HighDPI screens
      * like the JavaFX canvas does. The user has to take care of that manually.
-     * 
+     *
      * @param width the width in pixels.
      * @param height the height in pixels.
      */
     public SkiaSurfaceFX(int width, int height) {
+        this(width, height, 1);
+    }
+
+    /**
+     * Generates a raster Skia surface with the given number of buffers. With one buffer
+     * the rendering happens directly on the JavaFX application thread. With two or three
+     * buffers the rendering happens on a dedicated render thread. Three buffers allow the
+     * render thread to start the next frame while the previous one is still being displayed,
+     * which is recommended for animations.<br>
+     * Note: Skia does not do any automatic scaling for Retina or HighDPI screens
+     * like the JavaFX canvas does. The user has to take care of that manually.
+     *
+     * @param width the width in pixels.
+     * @param height the height in pixels.
+     * @param numBuffers the number of buffers (1, 2 or 3).
+     */
+    public SkiaSurfaceFX(int width, int height, int numBuffers) {
+        this(width, height, numBuffers, Arena.ofShared(), true);
+    }
+
+    /**
+     * Generates a raster Skia surface like above but allocates its pixels in the given Arena.
+     * Closing the surface then releases its Skia resources but the pixels are only freed when
+     * the Arena is closed. This is useful for many short-lived surfaces, e.g., on a dashboard,
+     * which can all be freed at once. The Arena must allow access from other threads and must
+     * not be closed while any of its surfaces is still displayed.
+     *
+     * @param width the width in pixels.
+     * @param height the height in pixels.
+     * @param numBuffers the number of buffers (1, 2 or 3).
+     * @param arena the shared Arena to allocate the pixels in.
+     */
+    public SkiaSurfaceFX(int width, int height, int numBuffers, Arena arena) {
+        this(width, height, numBuffers, arena, false);
+    }
+
+    private SkiaSurfaceFX(int width, int height, int numBuffers, Arena arena, boolean ownsArena) {
+        this(allocate(arena, ownsArena, width, height, numBuffers), ownsArena ? arena : null, width, height, numBuffers);
+    }
+
+    /**
+     * Generates an unbuffered raster Skia surface over the beginning of an existing direct buffer
+     * which may be larger than needed. This allows to reuse the buffer for surfaces of different
+     * sizes and thus different row strides.
+     *
+     * @param byteBuffer the direct buffer with a capacity of at least width * height * 4 bytes.
+     * @param width the width in pixels.
+     * @param height the height in pixels.
+     */
+    SkiaSurfaceFX(ByteBuffer byteBuffer, int width, int height) {
+        this(byteBuffer, null, width, height, 1);
+    }
+
+    private SkiaSurfaceFX(ByteBuffer byteBuffer, Arena ownArena, int width, int height, int numBuffers) {
+        if (numBuffers < 1 || numBuffers > 3) {
+            throw new IllegalArgumentException("The number of buffers must be 1, 2 or 3.");
+        }
+        if (! byteBuffer.isDirect() || byteBuffer.capacity() < width * height * 4 * numBuffers) {
+            throw new IllegalArgumentException("The buffer must be direct and large enough.");
+        }
+        this.ownArena = ownArena;
+        this.width = width;
+        this.height = height;
+        this.numBuffers = numBuffers;
+        this.byteBuffer = byteBuffer;
         try {
-            byteBuffer = ByteBuffer.allocateDirect(width * height * 4);
-            pixelBuffer = new PixelBuffer<>(width, height, byteBuffer.asIntBuffer(), PixelFormat.getIntArgbPreInstance());
+            pixelBuffer = new PixelBuffer<>(width, height * numBuffers, byteBuffer.asIntBuffer(), PixelFormat.getIntArgbPreInstance());
             image = new WritableImage(pixelBuffer);
-            surface = Surface.makeRasterDirect(ImageInfo.makeN32Premul(width, height), getBufferPointer(byteBuffer), width * 4);
+            surfaces = new Surface[numBuffers];
+            address = getBufferPointer(byteBuffer);
+            for (int i = 0; i < numBuffers; i++) {
+                surfaces[i] = Surface.makeRasterDirect(ImageInfo.makeN32Premul(width, height), address + (long) i * width * height * 4, width * 4);
+            }
         } catch (Exception e) {
+            if (ownArena != null) ownArena.close();
             throw new RuntimeException("Creation of Skia surface failed.", e);
         }
+        viewport.set(frameOf(0));
+
+        if (numBuffers > 1) {
+            for (int i = 1; i < numBuffers; i++) freeBuffers.add(i);
+            renderExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread t = new Thread(runnable);
+                t.setDaemon(true);
+                t.setName("SkiaRenderer");
+                return t ;
+            });
+            retireTimer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    retireBuffers();
+                }
+            };
+        } else {
+            renderExecutor = null;
+            retireTimer = null;
+        }
     }
-    
+
     /**
-     * Get the byte buffer if you need it.
-     * 
+     * Get the byte buffer if you need it. In buffered mode it contains all buffers below each other.
+     *
      * @return the byte buffer.
      */
     public ByteBuffer getByteBuffer() {
@@ -73,7 +252,7 @@ public class SkiaSurfaceFX {
 
     /**
      * Get the pixel buffer if you need it.
-     * 
+     *
      * @return the pixel buffer.
      */
     public PixelBuffer<IntBuffer> getPixelBuffer() {
@@ -81,43 +260,393 @@ public class SkiaSurfaceFX {
     }
 
     /**
-     * Get the image the Canvas is rendering to.
-     * 
+     * Get the image the Canvas is rendering to. In buffered mode it contains all buffers
+     * below each other, so it must be displayed with the viewport of this surface.
+     *
      * @return the image.
+     * @see #viewportProperty()
      */
     public Image getImage() {
         return image;
     }
-    
+
+    /**
+     * The part of the image which contains the currently displayed buffer.
+     * Bind the viewport of an ImageView to it or use createImageView().
+     *
+     * @return the viewport property.
+     */
+    public ReadOnlyObjectProperty<Rectangle2D> viewportProperty() {
+        return viewport.getReadOnlyProperty();
+    }
+
+    /**
+     * Create a new ImageView which displays the image of this surface with the right viewport.
+     *
+     * @return the new ImageView.
+     */
+    public ImageView createImageView() {
+        ImageView imageView = new ImageView(image);
+        imageView.viewportProperty().bind(viewport);
+        return imageView;
+    }
+
     /**
-     * Get the Skija Surface if you need it.
-     * 
+     * Get the Skija Surface if you need it. In buffered mode this is the surface of the
+     * first buffer which must only be used on the render thread.
+     *
      * @return the Skija Surface.
      */
     public Surface getSurface() {
-        return surface;
+        return surfaces[0];
     }
-    
+
+    public int getWidth() {return width;}
+
+    public int getHeight() {return height;}
+
+    public int getNumBuffers() {return numBuffers;}
+
+    public boolean isBuffered() {return numBuffers > 1;}
+
     /**
      * Render something into the Canvas of this Surface.
      * You have to provide a Callback which takes a Canvas and returns a JavaFX
      * Rectangle2D or null. See the PixelBuffer.updateBuffer method for more details.
-     * 
+     *
+     * In buffered mode this method returns immediately and the Callback is executed
+     * later on the render thread. If it is called again before the render thread has
+     * started, only the last Callback is executed. As each buffer contains an older
+     * frame, the Callback has to redraw the whole Canvas and its result is only used
+     * to detect that nothing has changed (Rectangle2D.EMPTY).
+     * Must be called on the JavaFX application thread.
+     *
+     * If regions have been invalidated since the last rendering, the Canvas is clipped
+     * to the union of them before the Callback is executed, so only their pixels are
+     * rasterised, and only the bounding box of this union is uploaded to the image.
+     * The result of the Callback is ignored then. So small changes on a large surface
+     * are cheap to render and to display. Invalidations are ignored in buffered mode.
+     *
+     * Calls after the surface has been closed are ignored.
+     *
      * @param renderer the renderer Callback.
+     * @see #invalidate(Rectangle2D...)
      */
     public void render(RenderCallback renderer) {
-        pixelBuffer.updateBuffer(pb -> renderer.call(surface.getCanvas()));
+        if (closed) return;
+        if (numBuffers == 1) {
+            if (dirty) {
+                final Rect clipBounds = Rect.makeLTRB(dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY);
+                final Rectangle2D region = new Rectangle2D(dirtyMinX, dirtyMinY, dirtyMaxX - dirtyMinX, dirtyMaxY - dirtyMinY);
+                dirty = false;
+                try (Path clip = new Path()) {
+                    for (Rect rect : dirtyRects) clip.addRect(rect);
+                    dirtyRects.clear();
+                    pixelBuffer.updateBuffer(pb -> {
+                        draw(0, renderer, clipBounds, clip);
+                        return region;
+                    });
+                }
+            } else {
+                pixelBuffer.updateBuffer(pb -> draw(0, renderer, null, null));
+            }
+        } else {
+            dirty = false;
+            dirtyRects.clear();
+            if (pendingRenderer.getAndSet(renderer) == null && ! renderExecutor.isShutdown()) {
+                renderExecutor.execute(this::renderPending);
+            }
+        }
+    }
+
+    /**
+     * Mark regions of this surface as changed. The next rendering is then restricted to
+     * the union of all regions which have been invalidated since the last rendering.
+     * The regions are extended to whole pixels and clipped to the surface.
+     * Must be called on the JavaFX application thread.
+     *
+     * @param regions the changed regions in pixels.
+     */
+    public void invalidate(Rectangle2D... regions) {
+        for (Rectangle2D region : regions) {
+            int minX = Math.max((int) Math.floor(region.getMinX()), 0);
+            int minY = Math.max((int) Math.floor(region.getMinY()), 0);
+            int maxX = Math.min((int) Math.ceil(region.getMaxX()), width);
+            int maxY = Math.min((int) Math.ceil(region.getMaxY()), height);
+            if (minX >= maxX || minY >= maxY) continue;
+            dirtyRects.add(Rect.makeLTRB(minX, minY, maxX, maxY));
+            if (dirty) {
+                dirtyMinX = Math.min(dirtyMinX, minX);
+                dirtyMinY = Math.min(dirtyMinY, minY);
+                dirtyMaxX = Math.max(dirtyMaxX, maxX);
+                dirtyMaxY = Math.max(dirtyMaxY, maxY);
+            } else {
+                dirtyMinX = minX;
+                dirtyMinY = minY;
+                dirtyMaxX = maxX;
+                dirtyMaxY = maxY;
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Split this surface into columns x rows tiles which are rendered in parallel.
+     * Each tile has its own Skia surface over its part of the buffer with the row stride
+     * of the whole surface, so no pixels have to be copied and there is still only one
+     * update of the image. The RenderCallback is then executed once per tile, possibly
+     * concurrently, with a Canvas which is translated to the tile and clipped to it.
+     * So it has to be thread-safe, must not reset the matrix of the Canvas and its
+     * result is ignored. A tiling of 1 x 1 switches the tiling off again. The surfaces of
+     * a replaced tiling are closed as soon as no rendering uses them anymore.
+     * Must be called on the JavaFX application thread. Calls after the surface has been
+     * closed are ignored.
+     *
+     * @param columns the number of tile columns.
+     * @param rows the number of tile rows.
+     */
+    public void setTiling(int columns, int rows) {
+        if (columns < 1 || rows < 1 || columns > width || rows > height) {
+            throw new IllegalArgumentException("Invalid tiling " + columns + " x " + rows + ".");
+        }
+        if (closed) return;
+        if (columns * rows == 1) {
+            replaceTiling(null);
+            return;
+        }
+        final Rect[] bounds = new Rect[columns * rows];
+        final Surface[][] tileSurfaces = new Surface[numBuffers][columns * rows];
+        for (int row = 0; row < rows; row++) {
+            final int y0 = row * height / rows;
+            final int y1 = (row + 1) * height / rows;
+            for (int column = 0; column < columns; column++) {
+                final int x0 = column * width / columns;
+                final int x1 = (column + 1) * width / columns;
+                final int tile = row * columns + column;
+                bounds[tile] = Rect.makeLTRB(x0, y0, x1, y1);
+                for (int i = 0; i < numBuffers; i++) {
+                    final long tileAddress = address + ((long) i * height + y0) * width * 4 + (long) x0 * 4;
+                    tileSurfaces[i][tile] = Surface.makeRasterDirect(ImageInfo.makeN32Premul(x1 - x0, y1 - y0), tileAddress, width * 4);
+                }
+            }
+        }
+        replaceTiling(new Tiling(bounds, tileSurfaces));
+    }
+
+    // Must be called on JavaFX application thread.
+    private void replaceTiling(Tiling newTiling) {
+        final Tiling oldTiling = tiling;
+        tiling = newTiling;
+        if (oldTiling == null) return;
+        if (renderExecutor != null) {
+            // The render thread may still draw into the old tiles, so they are closed
+            // after it is done, i.e., by a task which is queued behind that rendering.
+            synchronized (retiredTilings) {
+                retiredTilings.add(oldTiling);
+            }
+            renderExecutor.execute(this::closeRetiredTilings);
+        } else {
+            releaseLater(oldTiling::close);
+        }
+    }
+
+    private void closeRetiredTilings() {
+        synchronized (retiredTilings) {
+            for (Tiling t : retiredTilings) t.close();
+            retiredTilings.clear();
+        }
     }
-    
+
+    /**
+     * Split this surface into horizontal stripes, one per available processor.
+     */
+    public void setParallelTiling() {
+        setTiling(1, Math.min(Runtime.getRuntime().availableProcessors(), height));
+    }
+
+    public boolean isTiled() {return tiling != null;}
+
+    /**
+     * Close this surface. Later renderings are ignored. The Skia surfaces are closed and
+     * the pixels are freed unless they belong to a user supplied Arena. In buffered mode
+     * this happens after a running rendering has finished, without blocking the caller.
+     * Called on the JavaFX application thread, this happens two pulses later because the
+     * last update of the image may still be in progress. So the image should not be
+     * displayed anymore when its surface is closed.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        final Tiling t = tiling;
+        tiling = null;
+        final Runnable release = () -> {
+            if (t != null) t.close();
+            closeRetiredTilings();
+            for (Surface surface : surfaces) surface.close();
+            if (ownArena != null) ownArena.close();
+        };
+        if (renderExecutor != null) {
+            pendingRenderer.set(null);
+            retireTimer.stop();
+            // A rendering which waits for a free buffer must not wait for the retire timer anymore.
+            for (int[] retiring : retiringBuffers) freeBuffers.add(retiring[0]);
+            retiringBuffers.clear();
+            // The release is queued behind a running rendering and then continues on the JavaFX application thread.
+            renderExecutor.execute(() -> {
+                try {
+                    Platform.runLater(() -> releaseLater(release));
+                } catch (IllegalStateException e) {
+                    release.run(); // The JavaFX toolkit is not running anymore.
+                }
+            });
+            renderExecutor.shutdown();
+        } else {
+            releaseLater(release);
+        }
+    }
+
+    public boolean isClosed() {return closed;}
+
+    /**
+     * Run a release action when memory which may still be uploaded by JavaFX can be freed.
+     * On the JavaFX application thread this is done after a few pulses, otherwise at once.
+     *
+     * @param release the release action.
+     */
+    static void releaseLater(Runnable release) {
+        if (Platform.isFxApplicationThread()) {
+            new AnimationTimer() {
+                private int pulses = RETIRE_PULSES;
+                @Override
+                public void handle(long now) {
+                    if (--pulses <= 0) {
+                        stop();
+                        release.run();
+                    }
+                }
+            }.start();
+        } else {
+            release.run();
+        }
+    }
+
+    // Must be called on the render thread.
+    private void renderPending() {
+        final RenderCallback renderer = pendingRenderer.getAndSet(null);
+        if (renderer == null) return;
+        final int bufferIndex;
+        try {
+            bufferIndex = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // The buffer must be given back if it is not presented, otherwise the render thread runs out of buffers.
+        boolean presented = false;
+        try {
+            if (closed) return;
+            final Rectangle2D result = draw(bufferIndex, renderer, null, null);
+            Platform.runLater(() -> present(bufferIndex, result));
+            presented = true;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            if (! presented) freeBuffers.add(bufferIndex);
+        }
+    }
+
+    // Must be called on JavaFX application thread.
+    private void present(int bufferIndex, Rectangle2D result) {
+        if (closed || Rectangle2D.EMPTY.equals(result)) {
+            // Nothing has changed or the surface is closed, so the buffer was not displayed and can be reused immediately.
+            freeBuffers.add(bufferIndex);
+            return;
+        }
+        final int oldBufferIndex = displayedBuffer;
+        final Rectangle2D frame = frameOf(bufferIndex);
+        displayedBuffer = bufferIndex;
+        pixelBuffer.updateBuffer(pb -> {
+            viewport.set(frame);
+            return frame;
+        });
+        retiringBuffers.add(new int[] {oldBufferIndex, RETIRE_PULSES});
+        retireTimer.start();
+    }
+
+    // Must be called on JavaFX application thread.
+    private void retireBuffers() {
+        Iterator<int[]> it = retiringBuffers.iterator();
+        while (it.hasNext()) {
+            int[] retiring = it.next();
+            if (--retiring[1] <= 0) {
+                freeBuffers.add(retiring[0]);
+                it.remove();
+            }
+        }
+        if (retiringBuffers.isEmpty()) retireTimer.stop();
+    }
+
+    // Draw into the given buffer either directly or tile by tile in parallel.
+    // The clip consists of whole pixels and its bounds are used to skip tiles.
+    private Rectangle2D draw(int bufferIndex, RenderCallback renderer, Rect clipBounds, Path clip) {
+        final Tiling t = tiling;
+        if (t == null) {
+            final Canvas canvas = surfaces[bufferIndex].getCanvas();
+            if (clip == null) return renderer.call(canvas);
+            int saveCount = canvas.save();
+            try {
+                canvas.clipPath(clip, ClipMode.INTERSECT, false);
+                renderer.call(canvas);
+            } finally {
+                canvas.restoreToCount(saveCount);
+            }
+        } else {
+            IntStream.range(0, t.bounds.length).parallel().forEach(tile -> {
+                final Rect bounds = t.bounds[tile];
+                if (clipBounds != null) {
+                    Rect visible = bounds.intersect(clipBounds);
+                    if (visible == null || visible.isEmpty()) return;
+                }
+                final Canvas canvas = t.surfaces[bufferIndex][tile].getCanvas();
+                int saveCount = canvas.save();
+                try {
+                    canvas.translate(-bounds.getLeft(), -bounds.getTop());
+                    if (clip != null) canvas.clipPath(clip, ClipMode.INTERSECT, false);
+                    renderer.call(canvas);
+                } finally {
+                    canvas.restoreToCount(saveCount);
+                }
+            });
+        }
+        return null;
+    }
+
+    private static ByteBuffer allocate(Arena arena, boolean ownsArena, int width, int height, int numBuffers) {
+        try {
+            if (numBuffers < 1 || numBuffers > 3) {
+                throw new IllegalArgumentException("The number of buffers must be 1, 2 or 3.");
+            }
+            return arena.allocate((long) width * height * 4 * numBuffers, PIXEL_ALIGNMENT).asByteBuffer();
+        } catch (RuntimeException e) {
+            if (ownsArena) arena.close();
+            throw e;
+        }
+    }
+
+    private Rectangle2D frameOf(int bufferIndex) {
+        return new Rectangle2D(0, bufferIndex * height, width, height);
+    }
+
     private final long getBufferPointer(ByteBuffer byteBuffer) throws Exception {
         if (AVOID_ILLEGAL_REFLECTION) {
 //          return MemorySegment.ofByteBuffer(byteBuffer).address().toRawLongValue();   // old
             return MemorySegment.ofBuffer(byteBuffer).address();                        // new
-        } else {        
+        } else {
             Field address = Buffer.class.getDeclaredField("address");
             address.setAccessible(true);
             return address.getLong(byteBuffer);
         }
     }
-    
+
 }